@@ -0,0 +1,77 @@
+package com.cloudbees.api.event.benchmarks;
+
+import com.cloudbees.api.event.Event;
+import com.cloudbees.api.event.EventApi;
+import com.cloudbees.api.event.ImmutableEvent;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reflective {@link Event} binding against the hand-written {@link ImmutableEvent} serializers, for the same JSON.
+ * Run with <code>-prof gc</code> to compare allocations per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventModelBenchmark {
+
+    @Param({"0", "8"})
+    public int extraFields;
+
+    private EventApi.RestClient restClient;
+    private ObjectMapper mapper;
+    private Event event;
+    private ImmutableEvent immutableEvent;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        restClient = new EventApi.RestClient();
+        mapper = restClient.getObjectMapper();
+        event = Events.sample(extraFields);
+        immutableEvent = ImmutableEvent.from(event);
+        json = mapper.writeValueAsBytes(event);
+    }
+
+    @TearDown
+    public void tearDown() {
+        restClient.close();
+    }
+
+    @Benchmark
+    public byte[] serializeEvent() throws IOException {
+        return mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] serializeImmutableEvent() throws IOException {
+        return mapper.writeValueAsBytes(immutableEvent);
+    }
+
+    @Benchmark
+    public Event deserializeEvent() throws IOException {
+        return mapper.readValue(json, Event.class);
+    }
+
+    @Benchmark
+    public ImmutableEvent deserializeImmutableEvent() throws IOException {
+        return mapper.readValue(json, ImmutableEvent.class);
+    }
+}
@@ -0,0 +1,94 @@
+package com.cloudbees.api.event.benchmarks;
+
+import com.cloudbees.api.event.Event;
+import com.cloudbees.api.event.EventApi;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Jackson serialization and deserialization of {@link Event} with growing event data, compact and pretty printed.
+ *
+ * The <code>serializeGzip</code> benchmark reports the compressed bytes it produced as the <code>wireBytes</code>
+ * secondary result, divide it by the ops/s score to get the bytes sent per event.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventSerializationBenchmark {
+
+    @Param({"0", "8", "64"})
+    public int extraFields;
+
+    @Param({"false", "true"})
+    public boolean prettyPrint;
+
+    private EventApi.RestClient restClient;
+    private ObjectMapper mapper;
+    private Event event;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        restClient = new EventApi.RestClient.Builder().prettyPrint(prettyPrint).build();
+        mapper = restClient.getObjectMapper();
+        event = Events.sample(extraFields);
+        json = mapper.writeValueAsBytes(event);
+    }
+
+    @TearDown
+    public void tearDown() {
+        restClient.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public Event deserialize() throws IOException {
+        return mapper.readValue(json, Event.class);
+    }
+
+    @Benchmark
+    public byte[] serializeGzip(WireBytes wire) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        mapper.writeValue(out, event);
+        out.close();
+        byte[] compressed = bytes.toByteArray();
+        wire.wireBytes += compressed.length;
+        return compressed;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class WireBytes {
+        public long wireBytes;
+
+        @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+        public void reset() {
+            wireBytes = 0;
+        }
+    }
+}
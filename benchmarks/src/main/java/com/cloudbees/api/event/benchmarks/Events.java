@@ -0,0 +1,39 @@
+package com.cloudbees.api.event.benchmarks;
+
+import com.cloudbees.api.event.Event;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Sample events shared by the benchmarks
+ */
+final class Events {
+    private Events() {
+    }
+
+    /**
+     * Event with the four predefined event data fields plus the given number of extra ones
+     */
+    @SuppressWarnings("unchecked")
+    static Event sample(int extraFields) {
+        try {
+            Event event = new Event(new Event.Target(
+                    new URL("https://services-platform.cloudbees.com/api/services/resources/cb-app/acme/helloworld"),
+                    "https://types.cloudbees.com/resource/services-platform/resource/application"), "info");
+            Map data = new Event.EventData.Builder("Application helloworld deployed")
+                    .description("Application helloworld event")
+                    .icon(new URL("https://run.cloudbees.com/images/app.png"))
+                    .url(new URL("https://run.cloudbees.com/a/acme"))
+                    .build();
+            for(int i = 0; i < extraFields; i++){
+                data.put("field" + i, "value of extra event data field number " + i);
+            }
+            event.setEvent(data);
+            return event;
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.cloudbees.api.event.benchmarks;
+
+import com.cloudbees.api.event.Event;
+import com.cloudbees.api.event.EventApiException;
+import com.cloudbees.api.event.QueryEventObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * URL construction of {@link QueryEventObject.QueryBuilder} and {@link Event.Target.SpTargetBuilder}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QueryBuilderBenchmark {
+    private static final String EVENTS_URL = "https://services-platform.cloudbees.com/api/events/";
+
+    private final Date from = new Date(1384721849000L);
+    private final Date to = new Date(1384808249000L);
+
+    @Benchmark
+    public String spQuery() throws EventApiException {
+        return new QueryEventObject.QueryBuilder(EVENTS_URL)
+                .account("cloudbees")
+                .service("cb-app")
+                .resource("helloworld")
+                .from(from)
+                .to(to)
+                .limit(100)
+                .offset(200)
+                .types("info", "alert")
+                .build()
+                .toUri();
+    }
+
+    @Benchmark
+    public String cloudResourceQuery() throws EventApiException {
+        return new QueryEventObject.QueryBuilder(EVENTS_URL)
+                .cloudResource("https://services-platform.cloudbees.com/api/services/resources/cb-app/cloudbees/helloworld")
+                .cloudResourceType("https://types.cloudbees.com/resource/services-platform/resource")
+                .build()
+                .toUri();
+    }
+
+    @Benchmark
+    public Event.Target spTarget() throws EventApiException {
+        return new Event.Target.SpTargetBuilder("cb-app")
+                .resourceId("helloworld", "cloudbees")
+                .resourceType("application")
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.cloudbees.api.event.benchmarks;
+
+import com.cloudbees.api.event.Event;
+import com.cloudbees.api.event.EventApi;
+import com.cloudbees.api.event.EventApiException;
+import com.cloudbees.api.event.EventProjection;
+import com.cloudbees.api.event.ProjectedEvent;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a query result of 1000 events keeping a few fields of the events of one type: full binding to {@link Event}
+ * and filtering, against an {@link EventProjection}. Run with <code>-prof gc</code> to compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QueryProjectionBenchmark {
+
+    /**
+     * One in matchEvery events has type alert
+     */
+    @Param({"1", "10", "100"})
+    public int matchEvery;
+
+    private EventApi.RestClient restClient;
+    private ObjectMapper mapper;
+    private EventProjection projection;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException, EventApiException {
+        restClient = new EventApi.RestClient();
+        mapper = restClient.getObjectMapper();
+        projection = new EventProjection.Builder()
+                .fields("id", "activation_time", "event.title")
+                .where("type", EventProjection.equalTo("alert"))
+                .build();
+        List<Event> events = new ArrayList<Event>();
+        for(int i = 0; i < 1000; i++){
+            Event event = Events.sample(4);
+            event.setType(i % matchEvery == 0 ? "alert" : "info");
+            event.setActivationTime(1384721849L + i);
+            events.add(event);
+        }
+        json = mapper.writeValueAsBytes(events);
+    }
+
+    @TearDown
+    public void tearDown() {
+        restClient.close();
+    }
+
+    @Benchmark
+    public List<Event> bindAndFilter() throws IOException {
+        List<Event> events = mapper.readValue(json, new TypeReference<List<Event>>() {});
+        List<Event> alerts = new ArrayList<Event>();
+        for(Event event : events){
+            if("alert".equals(event.getType())){
+                alerts.add(event);
+            }
+        }
+        return alerts;
+    }
+
+    @Benchmark
+    public List<ProjectedEvent> projection() throws IOException {
+        JsonParser parser = mapper.getJsonFactory().createJsonParser(json);
+        try {
+            return projection.readEvents(parser);
+        } finally {
+            parser.close();
+        }
+    }
+}
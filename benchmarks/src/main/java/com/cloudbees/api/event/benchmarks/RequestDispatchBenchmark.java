@@ -0,0 +1,78 @@
+package com.cloudbees.api.event.benchmarks;
+
+import com.cloudbees.api.event.DefaultHttpTransport;
+import com.cloudbees.api.event.Event;
+import com.cloudbees.api.event.EventApi;
+import com.cloudbees.api.event.EventApiException;
+import com.cloudbees.api.event.HttpTransport;
+import com.cloudbees.api.event.PooledHttpTransport;
+import com.cloudbees.api.event.QueryEventObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end publish and query throughput of {@link EventApi} against an in-process stub server, comparing the
+ * HTTP transports. Run with <code>-t</code> to add client threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RequestDispatchBenchmark {
+
+    @Param({"default", "pooled"})
+    public String transport;
+
+    @Param({"20"})
+    public int queryResultSize;
+
+    private StubEventServer server;
+    private EventApi.RestClient restClient;
+    private EventApi eventApi;
+    private Event event;
+    private String queryUrl;
+
+    @Setup
+    public void setUp() throws IOException, EventApiException {
+        server = new StubEventServer(queryResultSize);
+        HttpTransport httpTransport = "pooled".equals(transport)
+                ? new PooledHttpTransport.Builder().build()
+                : new DefaultHttpTransport();
+        restClient = new EventApi.RestClient(httpTransport);
+        eventApi = new EventApi("benchmark-token", server.getEndpoint(), restClient);
+        event = Events.sample(0);
+        queryUrl = new QueryEventObject.QueryBuilder(eventApi.eventApiUrl).account("acme").build().toUri();
+    }
+
+    @TearDown
+    public void tearDown() {
+        restClient.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public String publish() throws EventApiException {
+        return eventApi.publish(event);
+    }
+
+    @Benchmark
+    public List<Event> query() throws EventApiException {
+        return eventApi.query(queryUrl);
+    }
+}
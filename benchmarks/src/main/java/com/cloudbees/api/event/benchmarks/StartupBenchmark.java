@@ -0,0 +1,93 @@
+package com.cloudbees.api.event.benchmarks;
+
+import com.cloudbees.api.event.Event;
+import com.cloudbees.api.event.EventApi;
+import com.cloudbees.api.event.EventApiException;
+import com.cloudbees.api.event.QueryEventObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of creating an {@link EventApi} sharing the default RestClient against one with its own RestClient, as short
+ * lived tools and per request EventApi instances do. timeToFirstRequest runs once per fresh JVM, including class
+ * loading and Jersey initialization. Run with <code>-prof gc</code> to compare allocations per EventApi.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"shared", "dedicated"})
+    public String restClient;
+
+    private StubEventServer server;
+    private String queryUrl;
+
+    @Setup
+    public void setUp() throws IOException, EventApiException {
+        server = new StubEventServer(1);
+        queryUrl = new QueryEventObject.QueryBuilder(server.getEndpoint() + "api/events/").account("acme").build().toUri();
+    }
+
+    @TearDown
+    public void tearDown() {
+        EventApi.RestClient.getDefault().close();
+        server.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public List<Event> timeToFirstRequest() throws EventApiException {
+        return queryWithNewEventApi();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Fork(1)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public EventApi newEventApi() throws EventApiException {
+        if("shared".equals(restClient)){
+            return new EventApi("benchmark-token", server.getEndpoint());
+        }
+        EventApi.RestClient client = new EventApi.RestClient();
+        try {
+            return new EventApi("benchmark-token", server.getEndpoint(), client);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Fork(1)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public List<Event> queryWithNewEventApi() throws EventApiException {
+        if("shared".equals(restClient)){
+            return new EventApi("benchmark-token", server.getEndpoint()).query(queryUrl);
+        }
+        EventApi.RestClient client = new EventApi.RestClient();
+        try {
+            return new EventApi("benchmark-token", server.getEndpoint(), client).query(queryUrl);
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.cloudbees.api.event.benchmarks;
+
+import com.cloudbees.api.event.EventApi;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal Event API endpoint on the JDK HTTP server: POST returns a Location, GET returns a fixed list of events, so
+ * that the benchmarks measure the client and not the server.
+ */
+class StubEventServer {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong ids = new AtomicLong();
+    private final byte[] queryResult;
+
+    static {
+        // Otherwise Nagle's algorithm adds tens of milliseconds to every exchange
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    StubEventServer(int queryResultSize) throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for(int i = 0; i < queryResultSize; i++){
+            if(i > 0){
+                sb.append(',');
+            }
+            sb.append("{\"id\":\"").append(i).append("\",\"type\":\"info\",")
+                    .append("\"source\":{\"url\":\"https://services-platform.cloudbees.com/api/services/resources/cb-app/acme/helloworld\",")
+                    .append("\"types\":[\"https://types.cloudbees.com/resource/services-platform/resource/application\"]},")
+                    .append("\"event\":{\"title\":\"Application helloworld deployed\",\"description\":\"Application helloworld event\",")
+                    .append("\"url\":\"https://run.cloudbees.com/a/acme\"},\"activation_time\":").append(1384721849 + i).append('}');
+        }
+        queryResult = sb.append(']').toString().getBytes("UTF-8");
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        server.setExecutor(executor);
+        server.createContext("/api/events/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                drain(exchange.getRequestBody());
+                if("POST".equals(exchange.getRequestMethod())){
+                    exchange.getResponseHeaders().add("Location", getEndpoint() + "api/events/" + ids.incrementAndGet());
+                    exchange.sendResponseHeaders(201, -1);
+                }else{
+                    exchange.getResponseHeaders().add("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, queryResult.length);
+                    exchange.getResponseBody().write(queryResult);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Endpoint to pass to {@link EventApi#EventApi(String, String, EventApi.RestClient)}
+     */
+    String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        while(in.read(buffer) >= 0){
+            // discard
+        }
+        in.close();
+    }
+}
@@ -0,0 +1,390 @@
+package com.cloudbees.api.event;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.UriBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Non-blocking counterpart of {@link EventApi}. Every operation returns immediately with a future that completes once
+ * the response arrives.
+ *
+ * Requests are executed by Apache HttpAsyncClient on a small, fixed number of I/O reactor threads, so the number of
+ * requests in flight is bounded by the connection pool, not by the number of threads. Futures are completed on those
+ * I/O threads, callbacks attached to them should not block.
+ *
+ * <pre>
+ *     AsyncEventApi eventApi = new AsyncEventApi(accessToken, eventEndpoint);
+ *     ListenableFuture&lt;Event&gt; event = eventApi.readEventAsync(eventUrl);
+ *     ...
+ *     eventApi.close();
+ * </pre>
+ */
+public class AsyncEventApi implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncEventApi.class);
+    private static final String GZIP = "gzip";
+
+    public final String eventApiUrl;
+    private final AsyncRestClient restClient;
+    private final boolean ownsRestClient;
+    private volatile String authorizationHeader;
+
+    /**
+     * Creates an AsyncEventApi for the production endpoint with its own {@link AsyncRestClient}
+     *
+     * @param accessToken valid access token, see {@link EventApi#EventApi(String)} for the required scopes
+     */
+    public AsyncEventApi(@Nonnull String accessToken) throws EventApiException {
+        this(accessToken, EventApi.SP_PORD_BASE_URL);
+    }
+
+    /**
+     * Creates an AsyncEventApi with its own {@link AsyncRestClient}, closed by {@link #close()}
+     *
+     * @param eventEndpoint see {@link EventApi#EventApi(String, String)}
+     */
+    public AsyncEventApi(@Nonnull String accessToken, @Nonnull String eventEndpoint) throws EventApiException {
+        this(accessToken, eventEndpoint, new AsyncRestClient.Builder().build(), true);
+    }
+
+    /**
+     * Creates an AsyncEventApi sending its requests through the given, possibly shared, {@link AsyncRestClient}.
+     * {@link #close()} leaves the AsyncRestClient open.
+     */
+    public AsyncEventApi(@Nonnull String accessToken, @Nonnull String eventEndpoint, @Nonnull AsyncRestClient restClient) {
+        this(accessToken, eventEndpoint, restClient, false);
+    }
+
+    private AsyncEventApi(String accessToken, String eventEndpoint, AsyncRestClient restClient, boolean ownsRestClient) {
+        this.eventApiUrl = UriBuilder.fromUri(eventEndpoint).path(EventApi.EVENT_API_PATH).build().toString();
+        this.restClient = restClient;
+        this.ownsRestClient = ownsRestClient;
+        setAccessToken(accessToken);
+    }
+
+    /**
+     * Replaces the access token, see {@link EventApi#setAccessToken(String)}
+     */
+    public void setAccessToken(@Nonnull String accessToken) {
+        this.authorizationHeader = EventApi.createBearerAuthorizationHeader(accessToken);
+    }
+
+    /**
+     * Posts a given {@link Event}, see {@link EventApi#publish(Event)}
+     *
+     * @return Future holding the Location header of the newly created event
+     */
+    public ListenableFuture<String> publishAsync(@Nonnull Event eventRequest) {
+        HttpPost post = new HttpPost(eventApiUrl);
+        try {
+            EventApi.checkPublishable(eventRequest);
+            byte[] entity = restClient.objectMapper.writeValueAsBytes(eventRequest);
+            if(restClient.gzipRequests){
+                entity = gzip(entity);
+                post.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            }
+            post.setEntity(new ByteArrayEntity(entity, ContentType.APPLICATION_JSON));
+            if(eventRequest.getIdempotencyKey() != null){
+                post.setHeader(RetryPolicy.IDEMPOTENCY_KEY_HEADER, eventRequest.getIdempotencyKey());
+            }
+        } catch (EventApiException e) {
+            return Futures.immediateFailedFuture(e);
+        } catch (IOException e) {
+            return Futures.immediateFailedFuture(new EventApiException(e.getMessage(), e));
+        }
+        return execute(post, "publishAsync", new ResponseParser<String>() {
+            @Override
+            public String parse(HttpResponse response) throws EventApiException {
+                Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+                if(location == null){
+                    throw new EventApiException("AsyncEventApi.publishAsync() response has no Location header");
+                }
+                return location.getValue();
+            }
+        });
+    }
+
+    /**
+     * Reads an event given a URL identifying an event id, see {@link EventApi#readEvent(String)}
+     */
+    public ListenableFuture<Event> readEventAsync(@Nonnull String eventUrl) {
+        return execute(new HttpGet(eventUrl), "readEventAsync", new ResponseParser<Event>() {
+            @Override
+            public Event parse(HttpResponse response) throws IOException {
+                return restClient.objectMapper.readValue(content(response), Event.class);
+            }
+        });
+    }
+
+    /**
+     * Queries events, see {@link EventApi#query(String)}
+     *
+     * @param evenQueryUrl Event API URL with query parameters, see {@link QueryEventObject#toUri()}
+     */
+    public ListenableFuture<List<Event>> queryAsync(@Nonnull String evenQueryUrl) {
+        return execute(new HttpGet(evenQueryUrl), "queryAsync", new ResponseParser<List<Event>>() {
+            @Override
+            public List<Event> parse(HttpResponse response) throws IOException {
+                return restClient.objectMapper.readValue(content(response), new TypeReference<List<Event>>() {});
+            }
+        });
+    }
+
+    /**
+     * Deletes an event, see {@link EventApi#delete(String)}
+     */
+    public ListenableFuture<Boolean> deleteAsync(@Nonnull String eventUrl) {
+        return execute(new HttpDelete(eventUrl), "deleteAsync", new ResponseParser<Boolean>() {
+            @Override
+            public Boolean parse(HttpResponse response) {
+                return response.getStatusLine().getStatusCode() == 200;
+            }
+        });
+    }
+
+    /**
+     * Closes the {@link AsyncRestClient} if it was created by this AsyncEventApi
+     */
+    @Override
+    public void close() {
+        if(ownsRestClient){
+            restClient.close();
+        }
+    }
+
+    private <T> ListenableFuture<T> execute(final HttpUriRequest request, final String operation,
+                                            final ResponseParser<T> parser) {
+        final SettableFuture<T> result = SettableFuture.create();
+        request.setHeader(HttpHeaders.AUTHORIZATION, authorizationHeader);
+        if(restClient.acceptGzip){
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, GZIP);
+        }
+        final Future<HttpResponse> call = restClient.httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                int status = response.getStatusLine().getStatusCode();
+                if(status >= 300){
+                    String error = String.format("AsyncEventApi.%s() returned HTTP status: %s, message: %s %s returned %s",
+                            operation, status, request.getMethod(), request.getURI(), response.getStatusLine());
+                    logger.error(error);
+                    result.setException(new EventApiException(error, status));
+                    return;
+                }
+                try {
+                    result.set(parser.parse(response));
+                } catch (EventApiException e) {
+                    result.setException(e);
+                } catch (Exception e) {
+                    result.setException(new EventApiException(e.getMessage(), e));
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.setException(new EventApiException(e.getMessage(), e));
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+
+        // Abort the exchange if the caller cancels
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if(result.isCancelled()){
+                    call.cancel(true);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return result;
+    }
+
+    private static InputStream content(HttpResponse response) throws IOException {
+        InputStream content = response.getEntity().getContent();
+        Header encoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        if(encoding != null && GZIP.equalsIgnoreCase(encoding.getValue())){
+            return new GZIPInputStream(content);
+        }
+        return content;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 32);
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private interface ResponseParser<T> {
+        T parse(HttpResponse response) throws IOException, EventApiException;
+    }
+
+    /**
+     * Non-blocking HTTP client used by {@link AsyncEventApi}. One AsyncRestClient can be shared by any number of
+     * AsyncEventApi instances.
+     */
+    public static class AsyncRestClient implements Closeable {
+        private final CloseableHttpAsyncClient httpClient;
+        private final ObjectMapper objectMapper;
+        private final boolean acceptGzip;
+        private final boolean gzipRequests;
+
+        private AsyncRestClient(Builder builder) throws EventApiException {
+            this.objectMapper = JacksonConfigurator.configure(EventApi.createObjectMapper(builder.prettyPrint));
+            this.acceptGzip = builder.acceptGzip;
+            this.gzipRequests = builder.gzipRequests;
+            IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                    .setIoThreadCount(builder.ioThreads)
+                    .setConnectTimeout(builder.connectTimeoutMillis)
+                    .setSoTimeout(builder.readTimeoutMillis)
+                    .build();
+            PoolingNHttpClientConnectionManager connectionManager;
+            try {
+                connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+            } catch (IOReactorException e) {
+                throw new EventApiException("Failed to start I/O reactor: "+e.getMessage(), e);
+            }
+            connectionManager.setMaxTotal(builder.maxConnections);
+            connectionManager.setDefaultMaxPerRoute(builder.maxConnectionsPerRoute);
+            this.httpClient = HttpAsyncClients.custom().setConnectionManager(connectionManager).build();
+            this.httpClient.start();
+        }
+
+        public ObjectMapper getObjectMapper() {
+            return objectMapper;
+        }
+
+        @Override
+        public void close() {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close async HTTP client: "+e.getMessage(), e);
+            }
+        }
+
+        public static class Builder {
+            private int ioThreads = Runtime.getRuntime().availableProcessors();
+            private int maxConnections = 100;
+            private int maxConnectionsPerRoute = 20;
+            private int connectTimeoutMillis = 10000;
+            private int readTimeoutMillis = 60000;
+            private boolean prettyPrint;
+            private boolean acceptGzip;
+            private boolean gzipRequests;
+
+            /**
+             * Number of I/O reactor threads. Defaults to the number of processors.
+             */
+            public Builder ioThreads(int ioThreads){
+                this.ioThreads = ioThreads;
+                return this;
+            }
+
+            /**
+             * Maximum number of open connections across all hosts. Defaults to 100. Requests beyond that wait in the
+             * pool without holding a thread.
+             */
+            public Builder maxConnections(int maxConnections){
+                this.maxConnections = maxConnections;
+                return this;
+            }
+
+            /**
+             * Maximum number of open connections to a single host. Defaults to 20.
+             */
+            public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute){
+                this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+                return this;
+            }
+
+            /**
+             * Timeout for establishing a connection. Defaults to 10 seconds.
+             */
+            public Builder connectTimeout(long timeout, @Nonnull TimeUnit unit){
+                this.connectTimeoutMillis = (int) unit.toMillis(timeout);
+                return this;
+            }
+
+            /**
+             * Timeout waiting for data on an open connection. Defaults to 60 seconds.
+             */
+            public Builder readTimeout(long timeout, @Nonnull TimeUnit unit){
+                this.readTimeoutMillis = (int) unit.toMillis(timeout);
+                return this;
+            }
+
+            /**
+             * Indents the JSON sent to the Event API, for debugging. Off by default.
+             */
+            public Builder prettyPrint(boolean prettyPrint){
+                this.prettyPrint = prettyPrint;
+                return this;
+            }
+
+            /**
+             * Sends <code>Accept-Encoding: gzip</code>. Off by default, gzip encoded responses are decompressed
+             * either way.
+             */
+            public Builder acceptGzip(boolean acceptGzip){
+                this.acceptGzip = acceptGzip;
+                return this;
+            }
+
+            /**
+             * Compresses request bodies with <code>Content-Encoding: gzip</code>. Only enable it if the Event API
+             * endpoint accepts compressed requests. Off by default.
+             */
+            public Builder gzipRequests(boolean gzipRequests){
+                this.gzipRequests = gzipRequests;
+                return this;
+            }
+
+            public AsyncRestClient build() throws EventApiException {
+                if(ioThreads <= 0){
+                    throw new EventApiException("ioThreads must be greater than 0");
+                }
+                if(maxConnections <= 0 || maxConnectionsPerRoute <= 0){
+                    throw new EventApiException("maxConnections and maxConnectionsPerRoute must be greater than 0");
+                }
+                return new AsyncRestClient(this);
+            }
+        }
+    }
+}
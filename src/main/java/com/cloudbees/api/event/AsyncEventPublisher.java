@@ -0,0 +1,331 @@
+package com.cloudbees.api.event;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes events in the background so that callers don't block on the HTTP round trip of
+ * {@link EventApi#publish(Event)}.
+ *
+ * Events are put on a bounded in-memory queue and sent by a pool of sender threads. The Event API takes one event per
+ * POST, so each sender publishes the next queued event as soon as it is free.
+ *
+ * With a dedup window, an event with the same target URL, type and title as one published within the window isn't
+ * queued again, its caller gets the future of the earlier event instead. This keeps chatty sources, like a flapping
+ * health check, from sending the same event over and over. An event whose publish fails is forgotten so that it can be
+ * published again.
+ *
+ * <pre>
+ *     AsyncEventPublisher publisher = new AsyncEventPublisher.Builder(eventApi)
+ *             .queueCapacity(10000)
+ *             .senderThreads(4)
+ *             .overflowPolicy(AsyncEventPublisher.OverflowPolicy.DROP_OLDEST)
+ *             .build();
+ *
+ *     ListenableFuture&lt;String&gt; location = publisher.publish(event);
+ *     ...
+ *     publisher.close(); // sends whatever is still queued
+ * </pre>
+ */
+public class AsyncEventPublisher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncEventPublisher.class);
+
+    /**
+     * How long an idle sender waits for an event before checking whether the publisher is closed
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * What {@link AsyncEventPublisher#publish(Event)} does when the queue is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until there is room in the queue
+         */
+        BLOCK,
+
+        /**
+         * Evict the oldest queued event, its future fails with {@link EventApiException}
+         */
+        DROP_OLDEST,
+
+        /**
+         * Reject the new event with {@link EventApiException}
+         */
+        FAIL_FAST
+    }
+
+    private final EventApi eventApi;
+    private final BlockingQueue<PendingEvent> queue;
+    private final ExecutorService senders;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Futures of recently published events by dedup key, null if there is no dedup window
+     */
+    private final Cache<String, SettableFuture<String>> recent;
+    private final AtomicLong duplicates = new AtomicLong();
+    private volatile boolean closed;
+
+    private AsyncEventPublisher(Builder builder) {
+        this.eventApi = builder.eventApi;
+        this.queue = new ArrayBlockingQueue<PendingEvent>(builder.queueCapacity);
+        this.overflowPolicy = builder.overflowPolicy;
+        this.recent = builder.dedupWindowMillis > 0
+                ? CacheBuilder.newBuilder()
+                        .expireAfterWrite(builder.dedupWindowMillis, TimeUnit.MILLISECONDS)
+                        .maximumSize(builder.dedupMaxSize)
+                        .<String, SettableFuture<String>>build()
+                : null;
+        this.senders = Executors.newFixedThreadPool(builder.senderThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-publisher-%d").build());
+        for(int i = 0; i < builder.senderThreads; i++){
+            senders.execute(new Sender());
+        }
+    }
+
+    /**
+     * Queues an event for publishing.
+     *
+     * @return Future holding the Location header of the newly created event, see {@link EventApi#publish(Event)}, or
+     * the future of the same event published earlier within the dedup window
+     *
+     * @throws EventApiException if the event has no event data, the publisher is closed or the queue is full and the
+     * overflow policy doesn't allow to wait
+     */
+    public ListenableFuture<String> publish(@Nonnull Event event) throws EventApiException {
+        EventApi.checkPublishable(event);
+        if(closed){
+            throw new EventApiException("AsyncEventPublisher is closed");
+        }
+        PendingEvent pending = new PendingEvent(event);
+        if(recent != null){
+            pending.dedupKey = dedupKey(event);
+            SettableFuture<String> earlier = recent.asMap().putIfAbsent(pending.dedupKey, pending.future);
+            if(earlier != null){
+                duplicates.incrementAndGet();
+                return earlier;
+            }
+        }
+        switch (overflowPolicy){
+            case BLOCK:
+                try {
+                    queue.put(pending);
+                } catch (InterruptedException e) {
+                    forget(pending);
+                    Thread.currentThread().interrupt();
+                    throw new EventApiException("Interrupted while waiting for room in the publish queue", e);
+                }
+                break;
+            case DROP_OLDEST:
+                while(!queue.offer(pending)){
+                    PendingEvent dropped = queue.poll();
+                    if(dropped != null){
+                        logger.warn("Publish queue is full, dropping oldest event of type "+dropped.event.getType());
+                        failed(dropped, new EventApiException("Event dropped, publish queue is full"));
+                    }
+                }
+                break;
+            case FAIL_FAST:
+                if(!queue.offer(pending)){
+                    forget(pending);
+                    throw new EventApiException("Publish queue is full");
+                }
+                break;
+        }
+        // close() may have drained the queue while this call waited for room, nothing would send the event then
+        if(closed && queue.remove(pending)){
+            EventApiException e = new EventApiException("AsyncEventPublisher is closed");
+            failed(pending, e);
+            throw e;
+        }
+        return pending.future;
+    }
+
+    /**
+     * Number of events not queued because the same event was published within the dedup window
+     */
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * Number of events waiting to be sent
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting new events and waits until all queued events are sent.
+     */
+    @Override
+    public void close() {
+        try {
+            close(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops accepting new events and waits up to the given time for queued events to be sent. Events still queued
+     * after that have their futures failed.
+     *
+     * @return true if all queued events were sent
+     */
+    public boolean close(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        closed = true;
+        senders.shutdown();
+        boolean drained = senders.awaitTermination(timeout, unit);
+        if(!drained){
+            senders.shutdownNow();
+        }
+
+        // Anything that slipped in after the senders exited, or was left over on timeout
+        PendingEvent pending;
+        while((pending = queue.poll()) != null){
+            failed(pending, new EventApiException("AsyncEventPublisher closed before event was sent"));
+            drained = false;
+        }
+        return drained;
+    }
+
+    private class Sender implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while(!closed || !queue.isEmpty()){
+                    PendingEvent pending = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if(pending != null){
+                        send(pending);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Events left in the queue are failed by close()
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void send(PendingEvent pending) {
+            try {
+                pending.future.set(eventApi.publish(pending.event));
+            } catch (EventApiException e) {
+                failed(pending, e);
+            } catch (Throwable e) {
+                // Keep the sender alive, a dead sender would leave the remaining futures pending forever
+                logger.error("Failed to publish event: "+e.getMessage(), e);
+                failed(pending, e);
+            }
+        }
+    }
+
+    private void failed(PendingEvent pending, Throwable error) {
+        forget(pending);
+        pending.future.setException(error);
+    }
+
+    /**
+     * Removes a failed event from the dedup window, unless a later event already took its place
+     */
+    private void forget(PendingEvent pending) {
+        if(pending.dedupKey != null){
+            recent.asMap().remove(pending.dedupKey, pending.future);
+        }
+    }
+
+    private static String dedupKey(Event event) {
+        Map data = event.getEvent();
+        return event.getTarget().getUrl() + "\n" + event.getType() + "\n" + (data != null ? data.get("title") : null);
+    }
+
+    private static class PendingEvent {
+        private final Event event;
+        private final SettableFuture<String> future = SettableFuture.create();
+        private String dedupKey;
+
+        private PendingEvent(Event event) {
+            this.event = event;
+        }
+    }
+
+    public static class Builder {
+        private final EventApi eventApi;
+        private int queueCapacity = 1000;
+        private int senderThreads = 1;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private long dedupWindowMillis;
+        private int dedupMaxSize = 10000;
+
+        /**
+         * @param eventApi EventApi used to send the events
+         */
+        public Builder(@Nonnull EventApi eventApi) {
+            this.eventApi = eventApi;
+        }
+
+        /**
+         * Maximum number of events waiting to be sent. Defaults to 1000.
+         */
+        public Builder queueCapacity(int queueCapacity){
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Number of threads sending events concurrently. Defaults to 1.
+         */
+        public Builder senderThreads(int senderThreads){
+            this.senderThreads = senderThreads;
+            return this;
+        }
+
+        /**
+         * What to do when the queue is full. Defaults to {@link OverflowPolicy#BLOCK}
+         */
+        public Builder overflowPolicy(@Nonnull OverflowPolicy overflowPolicy){
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Suppresses events with the same target URL, type and title as an event published less than the given
+         * time ago. Off by default.
+         *
+         * @param maxSize maximum number of recent events remembered, the oldest are forgotten first
+         */
+        public Builder dedupWindow(long window, @Nonnull TimeUnit unit, int maxSize){
+            this.dedupWindowMillis = unit.toMillis(window);
+            this.dedupMaxSize = maxSize;
+            return this;
+        }
+
+        public AsyncEventPublisher build() throws EventApiException {
+            if(queueCapacity <= 0){
+                throw new EventApiException("queueCapacity must be greater than 0");
+            }
+            if(senderThreads <= 0){
+                throw new EventApiException("senderThreads must be greater than 0");
+            }
+            if(dedupWindowMillis < 0 || dedupMaxSize <= 0){
+                throw new EventApiException("dedupWindow must not be negative and its maxSize greater than 0");
+            }
+            return new AsyncEventPublisher(this);
+        }
+    }
+}
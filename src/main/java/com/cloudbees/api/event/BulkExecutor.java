@@ -0,0 +1,96 @@
+package com.cloudbees.api.event;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a call for each event URL on a bounded number of threads, optionally rate limited, collecting a result per
+ * URL instead of stopping at the first failure.
+ */
+class BulkExecutor {
+    /**
+     * Operation applied to each URL
+     */
+    interface Call<T> {
+        Outcome<T> call(String eventUrl) throws EventApiException;
+    }
+
+    static class Outcome<T> {
+        private final T value;
+        private final int statusCode;
+
+        Outcome(T value, int statusCode) {
+            this.value = value;
+            this.statusCode = statusCode;
+        }
+    }
+
+    private BulkExecutor() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> BulkResult<T> execute(Collection<String> eventUrls, BulkOptions options, final Call<T> call)
+            throws EventApiException {
+        final List<String> urls = new ArrayList<String>(eventUrls);
+        final BulkResult.Item<T>[] items = new BulkResult.Item[urls.size()];
+        final LatencyHistogram latency = new LatencyHistogram();
+        final RateLimiter rateLimiter = options.getRequestsPerSecond() > 0
+                ? RateLimiter.create(options.getRequestsPerSecond())
+                : null;
+
+        long start = System.nanoTime();
+        if(!urls.isEmpty()){
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.getConcurrency(), urls.size()),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-bulk-%d").build());
+            for(int i = 0; i < urls.size(); i++){
+                final int index = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(rateLimiter != null){
+                            rateLimiter.acquire();
+                        }
+                        items[index] = callOne(call, urls.get(index), latency);
+                    }
+                });
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new EventApiException("Interrupted while waiting for bulk operation", e);
+            }
+        }
+        return new BulkResult<T>(Arrays.asList(items), System.nanoTime() - start, latency);
+    }
+
+    private static <T> BulkResult.Item<T> callOne(Call<T> call, String url, LatencyHistogram latency) {
+        long start = System.nanoTime();
+        EventApiException error;
+        try {
+            Outcome<T> outcome = call.call(url);
+            long elapsed = System.nanoTime() - start;
+            latency.record(elapsed);
+            return new BulkResult.Item<T>(url, outcome.value, outcome.statusCode, null, elapsed);
+        } catch (EventApiException e) {
+            error = e;
+        } catch (Throwable e) {
+            // Connection failures surface as ClientHandlerException. Errors are recorded too, a call dying on its pool
+            // thread would leave its URL without an item.
+            error = new EventApiException(e.getMessage(), e);
+        }
+        long elapsed = System.nanoTime() - start;
+        latency.record(elapsed);
+        return new BulkResult.Item<T>(url, null, error.getStatusCode(), error, elapsed);
+    }
+}
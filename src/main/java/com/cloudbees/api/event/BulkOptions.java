@@ -0,0 +1,65 @@
+package com.cloudbees.api.event;
+
+/**
+ * Concurrency and rate limits of {@link EventApi#deleteAll(java.util.Collection, BulkOptions)} and
+ * {@link EventApi#readEvents(java.util.Collection, BulkOptions)}.
+ *
+ * Concurrent requests share the RestClient's transport, with a {@link PooledHttpTransport} the concurrency should not
+ * exceed its maximum connections per route.
+ */
+public class BulkOptions {
+    /**
+     * 4 concurrent requests, no rate limit
+     */
+    public static final BulkOptions DEFAULT = new BulkOptions(4, 0);
+
+    private final int concurrency;
+    private final double requestsPerSecond;
+
+    private BulkOptions(int concurrency, double requestsPerSecond) {
+        this.concurrency = concurrency;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Maximum request rate, 0 if unlimited
+     */
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public static class Builder {
+        private int concurrency = DEFAULT.concurrency;
+        private double requestsPerSecond;
+
+        /**
+         * Maximum number of requests in flight. Defaults to 4.
+         */
+        public Builder concurrency(int concurrency){
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Maximum number of requests started per second. Unlimited by default.
+         */
+        public Builder rateLimit(double requestsPerSecond){
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        public BulkOptions build() throws EventApiException {
+            if(concurrency <= 0){
+                throw new EventApiException("concurrency must be greater than 0");
+            }
+            if(requestsPerSecond < 0){
+                throw new EventApiException("rateLimit must not be negative");
+            }
+            return new BulkOptions(concurrency, requestsPerSecond);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.cloudbees.api.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a bulk operation, one {@link Item} per event URL in the order they were given, along with aggregate
+ * timing.
+ *
+ * @param <T> value returned by each successful call
+ */
+public class BulkResult<T> {
+    private final List<Item<T>> items;
+    private final long elapsedNanos;
+    private final LatencyHistogram latency;
+    private final int successCount;
+
+    BulkResult(List<Item<T>> items, long elapsedNanos, LatencyHistogram latency) {
+        this.items = Collections.unmodifiableList(items);
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+        int successes = 0;
+        for(Item<T> item : items){
+            if(item.isSuccess()){
+                successes++;
+            }
+        }
+        this.successCount = successes;
+    }
+
+    public List<Item<T>> getItems() {
+        return items;
+    }
+
+    /**
+     * Items that failed
+     */
+    public List<Item<T>> getFailures() {
+        List<Item<T>> failures = new ArrayList<Item<T>>();
+        for(Item<T> item : items){
+            if(!item.isSuccess()){
+                failures.add(item);
+            }
+        }
+        return failures;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getFailureCount() {
+        return items.size() - successCount;
+    }
+
+    /**
+     * Wall time of the whole operation
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Latency of the individual requests at the given percentile, in milliseconds
+     */
+    public double getLatencyMillis(double percentile) {
+        return (double) latency.getValueAtPercentile(percentile) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d succeeded, %d failed in %dms, p50=%.2fms p99=%.2fms",
+                successCount, getFailureCount(), getElapsedMillis(), getLatencyMillis(50), getLatencyMillis(99));
+    }
+
+    /**
+     * Result for one event URL
+     */
+    public static class Item<T> {
+        private final String eventUrl;
+        private final T value;
+        private final int statusCode;
+        private final EventApiException error;
+        private final long latencyNanos;
+
+        Item(String eventUrl, T value, int statusCode, EventApiException error, long latencyNanos) {
+            this.eventUrl = eventUrl;
+            this.value = value;
+            this.statusCode = statusCode;
+            this.error = error;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public String getEventUrl() {
+            return eventUrl;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        /**
+         * Value returned by the call, null if it failed
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * HTTP status of the response, 0 if there was none
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * Why the call failed, null if it succeeded
+         */
+        public EventApiException getError() {
+            return error;
+        }
+
+        public double getLatencyMillis() {
+            return (double) latencyNanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.cloudbees.api.event;
+
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.client.urlconnection.URLConnectionClientHandler;
+
+/**
+ * {@link HttpTransport} based on {@link java.net.HttpURLConnection}. Connection reuse is left to the JDK keep-alive
+ * cache.
+ */
+public class DefaultHttpTransport implements HttpTransport {
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    /**
+     * Transport without connect and read timeouts
+     */
+    public DefaultHttpTransport() {
+        this(0, 0);
+    }
+
+    /**
+     * @param connectTimeoutMillis connect timeout in milliseconds, 0 means no timeout
+     * @param readTimeoutMillis read timeout in milliseconds, 0 means no timeout
+     */
+    public DefaultHttpTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public ClientHandler createClientHandler(ClientConfig config) {
+        if(connectTimeoutMillis > 0){
+            config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, connectTimeoutMillis);
+        }
+        if(readTimeoutMillis > 0){
+            config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, readTimeoutMillis);
+        }
+        return new URLConnectionClientHandler();
+    }
+
+    @Override
+    public void close() {
+    }
+}
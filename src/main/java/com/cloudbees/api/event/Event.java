@@ -2,6 +2,7 @@ package com.cloudbees.api.event;
 
 
 import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +43,9 @@ public class Event {
     @JsonProperty("activation_time")
     private Long activationTime;
 
+    @JsonIgnore
+    private String idempotencyKey;
+
 
     @JsonCreator
     public Event(@Nonnull @JsonProperty("target") Target target, @Nonnull @JsonProperty("type") String type){
@@ -102,6 +106,30 @@ public class Event {
         this.activationTime = activationTime;
     }
 
+    /**
+     * Client-generated key sent in the {@value RetryPolicy#IDEMPOTENCY_KEY_HEADER} header when the event is
+     * published, so that a publish can be retried without creating the event twice. Not part of the event JSON.
+     */
+    @JsonIgnore
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * @param idempotencyKey unique per event, for example <code>UUID.randomUUID().toString()</code>
+     */
+    @JsonIgnore
+    public void setIdempotencyKey(@Nullable String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Converts an activation or expiry time, in seconds since the epoch as used by the Event API, to milliseconds
+     */
+    static long toMillis(long eventTime) {
+        return eventTime * 1000L;
+    }
+
     /**
      * Any cloud resource aware client posting events related to a cloud resource should simply be creating Target
      * using the url field. account and service fields should be used only by those clients who want to post events
@@ -127,6 +155,14 @@ public class Event {
             this.types = Arrays.asList(types);
         }
 
+        public URL getUrl() {
+            return url;
+        }
+
+        public List<String> getTypes() {
+            return types;
+        }
+
         /**
          * This is a convenience Target build to construct Target for Services Platform resources.
          */
@@ -0,0 +1,309 @@
+package com.cloudbees.api.event;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rolls up near-identical events into summary events before publishing them.
+ *
+ * Events of a type configured for aggregation are grouped by target URL, type and an optional key computed from the
+ * event. A group collects events for one window, starting with its first event, and is then published as a single
+ * event: the first event of the group, its title suffixed with the number of events, and the event data fields
+ * <code>count</code>, <code>samples</code> holding the event data of up to <code>maxSamples</code> events of the
+ * group, and <code>window_start</code> and <code>window_end</code> in seconds since the epoch. A group of a single
+ * event is published unchanged. Events of other types are published right away.
+ *
+ * <pre>
+ *     EventAggregator aggregator = new EventAggregator.Builder(eventApi)
+ *             .aggregate("build-started", 1, TimeUnit.MINUTES)
+ *             .maxSamples(5)
+ *             .build();
+ *
+ *     aggregator.publish(event);
+ *     ...
+ *     aggregator.close(); // publishes the open groups
+ * </pre>
+ *
+ * Summary events are published by a single background thread, failures are logged.
+ */
+public class EventAggregator implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EventAggregator.class);
+
+    private final EventApi eventApi;
+    private final Map<String, Rule> rules;
+    private final int maxSamples;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<GroupKey, Group> groups = new ConcurrentHashMap<GroupKey, Group>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private volatile boolean closed;
+
+    private EventAggregator(Builder builder) {
+        this.eventApi = builder.eventApi;
+        this.rules = new HashMap<String, Rule>(builder.rules);
+        this.maxSamples = builder.maxSamples;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-aggregator-%d").build());
+    }
+
+    /**
+     * Adds an event to its group, or publishes it right away if its type isn't aggregated
+     *
+     * @throws EventApiException if the event has no event data, the aggregator is closed or, for an event that isn't
+     * aggregated, publishing failed
+     */
+    public void publish(@Nonnull Event event) throws EventApiException {
+        EventApi.checkPublishable(event);
+        if(closed){
+            throw new EventApiException("EventAggregator is closed");
+        }
+        received.incrementAndGet();
+        Rule rule = rules.get(event.getType());
+        if(rule == null){
+            eventApi.publish(event);
+            published.incrementAndGet();
+            return;
+        }
+
+        GroupKey key = new GroupKey(String.valueOf(event.getTarget().getUrl()), event.getType(),
+                rule.key != null ? rule.key.apply(event) : null);
+        while(true){
+            Group group = groups.get(key);
+            if(group == null){
+                Group created = new Group(key);
+                group = groups.putIfAbsent(key, created);
+                if(group == null){
+                    created.add(event, maxSamples);
+                    schedule(created, rule.windowMillis);
+                    return;
+                }
+            }
+            if(group.add(event, maxSamples)){
+                return;
+            }
+            // The group was flushed in the meantime, start the next one
+        }
+    }
+
+    /**
+     * Number of events passed to {@link #publish(Event)}
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * Number of events and summary events sent to the Event API
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Publishes all open groups and stops the background thread
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        for(Group group : new ArrayList<Group>(groups.values())){
+            flush(group);
+        }
+    }
+
+    private void schedule(final Group group, long windowMillis) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush(group);
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed concurrently
+            flush(group);
+        }
+    }
+
+    private void flush(Group group) {
+        groups.remove(group.key, group);
+        Event summary = group.close();
+        if(summary == null){
+            return;
+        }
+        try {
+            eventApi.publish(summary);
+            published.incrementAndGet();
+        } catch (EventApiException e) {
+            logger.error("Failed to publish aggregated event of type "+group.key.type+": "+e.getMessage(), e);
+        } catch (RuntimeException e) {
+            // Keep the scheduler thread alive for the other groups
+            logger.error("Failed to publish aggregated event of type "+group.key.type+": "+e.getMessage(), e);
+        }
+    }
+
+    private static final class GroupKey {
+        private final String target;
+        private final String type;
+        private final String key;
+
+        private GroupKey(String target, String type, String key) {
+            this.target = target;
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof GroupKey)){
+                return false;
+            }
+            GroupKey that = (GroupKey) o;
+            return target.equals(that.target) && type.equals(that.type) && Objects.equal(key, that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(target, type, key);
+        }
+    }
+
+    private static class Group {
+        private final GroupKey key;
+        private final long startMillis = System.currentTimeMillis();
+        private Event first;
+        private int count;
+        private final List<Map> samples = new ArrayList<Map>();
+        private boolean closed;
+
+        private Group(GroupKey key) {
+            this.key = key;
+        }
+
+        /**
+         * @return false if the group is closed
+         */
+        private synchronized boolean add(Event event, int maxSamples) {
+            if(closed){
+                return false;
+            }
+            if(first == null){
+                first = event;
+            }
+            count++;
+            if(samples.size() < maxSamples){
+                samples.add(event.getEvent());
+            }
+            return true;
+        }
+
+        /**
+         * Closes the group
+         *
+         * @return event to publish for the group, null if it was closed already
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized Event close() {
+            if(closed){
+                return null;
+            }
+            closed = true;
+            if(count == 1){
+                return first;
+            }
+            Event summary = new Event(first.getTarget(), first.getType());
+            summary.setSource(first.getSource());
+            summary.setActivationTime(first.getActivationTime());
+            summary.setExpiryTime(first.getExpiryTime());
+            Map data = new LinkedHashMap(first.getEvent());
+            data.put("title", data.get("title") + " (" + count + " events)");
+            data.put("count", count);
+            data.put("samples", samples);
+            data.put("window_start", TimeUnit.MILLISECONDS.toSeconds(startMillis));
+            data.put("window_end", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+            summary.setEvent(data);
+            return summary;
+        }
+    }
+
+    private static class Rule {
+        private final long windowMillis;
+        private final Function<Event, String> key;
+
+        private Rule(long windowMillis, Function<Event, String> key) {
+            this.windowMillis = windowMillis;
+            this.key = key;
+        }
+    }
+
+    public static class Builder {
+        private final EventApi eventApi;
+        private final Map<String, Rule> rules = new HashMap<String, Rule>();
+        private int maxSamples = 10;
+
+        /**
+         * @param eventApi EventApi used to publish events and summary events
+         */
+        public Builder(@Nonnull EventApi eventApi) {
+            this.eventApi = eventApi;
+        }
+
+        /**
+         * Aggregates events of the given type by target URL over the given window
+         */
+        public Builder aggregate(@Nonnull String type, long window, @Nonnull TimeUnit unit){
+            return aggregate(type, window, unit, null);
+        }
+
+        /**
+         * Aggregates events of the given type by target URL and the key computed by the given function over the
+         * given window
+         *
+         * @param key computes the grouping key of an event, may return null
+         */
+        public Builder aggregate(@Nonnull String type, long window, @Nonnull TimeUnit unit,
+                                 @Nullable Function<Event, String> key){
+            rules.put(type, new Rule(unit.toMillis(window), key));
+            return this;
+        }
+
+        /**
+         * Maximum number of events whose event data is included in a summary event. Defaults to 10.
+         */
+        public Builder maxSamples(int maxSamples){
+            this.maxSamples = maxSamples;
+            return this;
+        }
+
+        public EventAggregator build() throws EventApiException {
+            for(Map.Entry<String, Rule> rule : rules.entrySet()){
+                if(rule.getValue().windowMillis <= 0){
+                    throw new EventApiException("Aggregation window of type "+rule.getKey()+" must be greater than 0");
+                }
+            }
+            if(maxSamples < 0){
+                throw new EventApiException("maxSamples must not be negative");
+            }
+            return new EventAggregator(this);
+        }
+    }
+}
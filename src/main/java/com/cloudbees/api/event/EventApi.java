@@ -1,16 +1,16 @@
 package com.cloudbees.api.event;
 
 
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
 import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientHandlerException;
-import com.sun.jersey.api.client.ClientRequest;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
-import com.sun.jersey.api.client.filter.ClientFilter;
-import com.sun.jersey.api.client.filter.LoggingFilter;
-import com.sun.org.apache.xerces.internal.impl.dv.util.Base64;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
+import org.apache.commons.codec.binary.Base64;
+import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.jaxrs.JacksonJsonProvider;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -21,11 +21,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -38,12 +40,27 @@ public class EventApi {
 
     private static final Logger logger = LoggerFactory.getLogger(EventApi.class);
     static final String SP_PORD_BASE_URL = "https://services-platform.cloudbees.com/";
-    private static final String EVENT_API_PATH = "/api/events/";
+    static final String EVENT_API_PATH = "/api/events/";
+
+    /**
+     * Page size used by {@link #queryStream(QueryEventObject)} when the query has no limit
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
 
-    private final String accessToken;
     public final String eventApiUrl;
-    private final String eventEndpoint;
-    private final RestClient restClient = new RestClient();
+
+    /**
+     * RestClient given to the constructor, null to use {@link RestClient#getDefault()}
+     */
+    private final RestClient restClient;
+
+    /**
+     * Authorization header value, computed once per access token
+     */
+    private volatile String authorizationHeader;
+
+    private volatile ReadEventCache readCache;
+    private volatile QueryCache queryCache;
 
     /**
      * Create an EventApi instance using a valid Oauth access_token with following scopes:
@@ -60,12 +77,14 @@ public class EventApi {
      * @throws IOException
      */
     public EventApi(@Nonnull String accessToken) throws IOException, EventApiException {
-        this(accessToken, UriBuilder.fromUri(SP_PORD_BASE_URL).path(EVENT_API_PATH).build().toString());
+        this(accessToken, SP_PORD_BASE_URL);
     }
 
 
     /**
-     * Constructs EventApi with provided event endpoint values.
+     * Constructs EventApi with provided event endpoint values. Requests are sent through the process-wide
+     * {@link RestClient#getDefault()}, created on the first request of any such EventApi, so creating an EventApi
+     * per access token or per request is cheap.
      *
      * Possible values are
      *
@@ -75,11 +94,68 @@ public class EventApi {
      * @throws IOException
      */
     public EventApi(@Nonnull String accessToken, @Nonnull String eventEndpoint) throws EventApiException {
-        this.accessToken = accessToken;
-        this.eventEndpoint = eventEndpoint;
-        this.eventApiUrl =UriBuilder.fromUri(this.eventEndpoint).path(EVENT_API_PATH).build().toString();
+        this.restClient = null;
+        this.eventApiUrl = eventApiUrl(eventEndpoint);
+        setAccessToken(accessToken);
+    }
+
+    /**
+     * Constructs EventApi with provided event endpoint that sends its requests through the given RestClient. A
+     * RestClient can be shared by many EventApi instances, whatever access token they use.
+     *
+     * @param restClient for example a RestClient using a {@link PooledHttpTransport}
+     */
+    public EventApi(@Nonnull String accessToken, @Nonnull String eventEndpoint, @Nonnull RestClient restClient) throws EventApiException {
+        this.restClient = restClient;
+        this.eventApiUrl = eventApiUrl(eventEndpoint);
+        setAccessToken(accessToken);
+    }
+
+    /**
+     * Replaces the access token used by this EventApi, for example after exchanging a refresh token for a new access
+     * token. Requests started after this call use the new token, requests in flight complete with the old one.
+     *
+     * @param accessToken valid access token, see {@link #EventApi(String)} for the required scopes
+     */
+    public void setAccessToken(@Nonnull String accessToken) {
+        this.authorizationHeader = createBearerAuthorizationHeader(accessToken);
+    }
+
+    /**
+     * Joins the endpoint and {@link #EVENT_API_PATH} like {@link UriBuilder#path(String)}, without looking up the
+     * JAX-RS runtime
+     */
+    static String eventApiUrl(String eventEndpoint) {
+        return (eventEndpoint.endsWith("/") ? eventEndpoint.substring(0, eventEndpoint.length() - 1) : eventEndpoint)
+                + EVENT_API_PATH;
     }
 
+    /**
+     * RestClient given to the constructor, or the default RestClient
+     */
+    private RestClient restClient() {
+        return restClient != null ? restClient : RestClient.getDefault();
+    }
+
+    /**
+     * Caches the events returned by {@link #readEvent(String)}. A cache can be shared by EventApi instances whose
+     * access tokens grant the same read scopes.
+     *
+     * @param readCache cache to use, null to disable caching
+     */
+    public void setReadCache(@Nullable ReadEventCache readCache) {
+        this.readCache = readCache;
+    }
+
+    /**
+     * Caches the time segments fetched by {@link #query(QueryEventObject)}. A cache can be shared by EventApi
+     * instances whose access tokens grant the same read scopes.
+     *
+     * @param queryCache cache to use, null to disable caching
+     */
+    public void setQueryCache(@Nullable QueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
 
 
 
@@ -93,43 +169,124 @@ public class EventApi {
      * @throws IOException
      */
     public  String publish(Event eventRequest) throws EventApiException {
-        if(eventRequest.getEvent() == null){
-            throw new EventApiException("No event data to be sent. Please set event data before publishing");
-        }else if(eventRequest.getEvent().get("title") == null){
+        checkPublishable(eventRequest);
+        RestClient restClient = restClient();
+        byte[] entity;
+        long start = System.nanoTime();
+        try{
+            entity = restClient.objectMapper.writeValueAsBytes(eventRequest);
+        }catch(IOException e){
+            throw new EventApiException(e.getMessage(), e);
+        }
+        restClient.metrics.serialization(EventApiMetrics.PUBLISH, System.nanoTime() - start);
+        String location = publish(entity, eventRequest.getIdempotencyKey());
+        published(eventRequest.getActivationTime());
+        return location;
+    }
+
+    /**
+     * Posts a given {@link ImmutableEvent}, which serializes faster than {@link Event}
+     *
+     * @return Returns Location header of the newly created event
+     */
+    public String publish(@Nonnull ImmutableEvent eventRequest) throws EventApiException {
+        if(eventRequest.getTitle() == null){
             throw new EventApiException("'title' must be set in the event data");
         }
-        WebResource wr = restClient.client.resource(UriBuilder.fromPath(eventApiUrl).build());
-        wr.addFilter(new BearerTokenFilter(accessToken));
-        ClientResponse cr = wr.type(MediaType.APPLICATION_JSON_TYPE).post(ClientResponse.class, eventRequest);
-        if(cr.getStatus() >= 300){
-            String error = String.format("EvenApi.publish() returned HTTP status: %s, message: %s",cr.getStatus(), cr.toString());
-            logger.error(error);
-            throw new EventApiException(error);
+        RestClient restClient = restClient();
+        byte[] entity;
+        long start = System.nanoTime();
+        try{
+            entity = restClient.objectMapper.writeValueAsBytes(eventRequest);
+        }catch(IOException e){
+            throw new EventApiException(e.getMessage(), e);
+        }
+        restClient.metrics.serialization(EventApiMetrics.PUBLISH, System.nanoTime() - start);
+        String location = publish(entity, eventRequest.getIdempotencyKey());
+        published(eventRequest.getActivationTime());
+        return location;
+    }
+
+    /**
+     * Drops the cached query results the published event belongs to. Without an activation time the event activates
+     * about now, which the query cache doesn't cache yet.
+     */
+    private void published(@Nullable Long activationTime) {
+        QueryCache cache = queryCache;
+        if(cache != null && activationTime != null){
+            cache.invalidate(Event.toMillis(activationTime));
+        }
+    }
+
+    /**
+     * Posts an event already serialized to JSON
+     *
+     * @param idempotencyKey sent as {@link RetryPolicy#IDEMPOTENCY_KEY_HEADER} if not null
+     */
+    String publish(byte[] entity, @Nullable String idempotencyKey) throws EventApiException {
+        WebResource.Builder request = authorized(restClient().client.resource(eventApiUrl)).type(MediaType.APPLICATION_JSON_TYPE);
+        if(idempotencyKey != null){
+            request = request.header(RetryPolicy.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        ClientResponse cr = request.post(ClientResponse.class, entity);
+        try{
+            if(cr.getStatus() >= 300){
+                String error = String.format("EvenApi.publish() returned HTTP status: %s, message: %s",cr.getStatus(), cr.toString());
+                logger.error(error);
+                throw new EventApiException(error, cr.getStatus());
+            }
+            return cr.getLocation().toString();
+        }finally {
+            cr.close();
         }
-        return cr.getLocation().toString();
     }
 
     /**
-     * Reads an event given a URL identifying an event id
+     * Reads an event given a URL identifying an event id. If a {@link ReadEventCache} is set, a fresh cached event
+     * is returned without contacting the server.
      *
      */
     public Event readEvent(@Nonnull String eventUrl) throws EventApiException {
+        ReadEventCache cache = readCache;
+        ReadEventCache.Entry cached = cache != null ? cache.get(eventUrl) : null;
+        if(cached != null && cached.isFresh()){
+            return cached.event;
+        }
 
-        logger.info("GET " + eventUrl);
+        logger.debug("GET " + eventUrl);
 
-        WebResource wr = restClient.client.resource(UriBuilder.fromPath(eventUrl).build());
-        wr.addFilter(new BearerTokenFilter(accessToken));
+        RestClient restClient = restClient();
+        WebResource.Builder request = authorized(restClient.client.resource(eventUrl));
+        if(cached != null && cached.etag != null){
+            request = request.header(HttpHeaders.IF_NONE_MATCH, cached.etag);
+        }
+        ClientResponse cr = request.get(ClientResponse.class);
         try{
-            wr.header("Authorization", createBearerAuthorizationHeader(accessToken));
-            ClientResponse cr = wr.get(ClientResponse.class);
+            if(cached != null && cr.getStatus() == ClientResponse.Status.NOT_MODIFIED.getStatusCode()){
+                cache.revalidated(eventUrl, cached);
+                return cached.event;
+            }
             if(cr.getStatus() >= 300){
                 String error = String.format("EvenApi.readEvent() returned HTTP status: %s, message: %s",cr.getStatus(), cr.toString());
                 logger.error(error);
-                throw new EventApiException(error);
+                throw new EventApiException(error, cr.getStatus());
+            }
+            if(cache == null){
+                long start = System.nanoTime();
+                Event event = restClient.objectMapper.readValue(cr.getEntityInputStream(), Event.class);
+                restClient.metrics.serialization(EventApiMetrics.READ_EVENT, System.nanoTime() - start);
+                return event;
             }
-            return restClient.objectMapper.readValue(cr.getEntityInputStream(), Event.class);
+            byte[] entity = ByteStreams.toByteArray(cr.getEntityInputStream());
+            long start = System.nanoTime();
+            Event event = restClient.objectMapper.readValue(entity, 0, entity.length, Event.class);
+            restClient.metrics.serialization(EventApiMetrics.READ_EVENT, System.nanoTime() - start);
+            cache.put(eventUrl, event, cr.getHeaders().getFirst(HttpHeaders.ETAG), entity.length);
+            return event;
         }catch(IOException e){
             throw new EventApiException(e.getMessage(), e);
+        }finally {
+            cr.close();
         }
 
     }
@@ -141,62 +298,277 @@ public class EventApi {
      * @throws IOException
      */
     public  List<Event> query(String evenQueryUrl) throws EventApiException {
-        logger.info("Query: "+evenQueryUrl);
-        WebResource wr = restClient.client.resource(evenQueryUrl);
-        wr.addFilter(new BearerTokenFilter(accessToken));
+        RestClient restClient = restClient();
+        ClientResponse cr = openQuery(evenQueryUrl);
         try{
-            wr.header("Authorization", createBearerAuthorizationHeader(accessToken));
-            ClientResponse cr = wr.get(ClientResponse.class);
-            if(cr.getStatus() >= 300){
-                String error = String.format("EvenApi.query() returned HTTP status: %s, message: %s",cr.getStatus(), cr.toString());
-                logger.error(error);
-                throw new EventApiException(error);
-            }
+            long start = System.nanoTime();
+            List<Event> events = restClient.objectMapper.readValue(cr.getEntityInputStream(), new TypeReference<List<Event>>() {});
+            restClient.metrics.serialization(EventApiMetrics.QUERY, System.nanoTime() - start);
+            return events;
+        }catch(IOException e){
+            throw new EventApiException(e.getMessage(), e);
+        }finally {
+            cr.close();
+        }
+    }
+
+    /**
+     * Runs a query built with {@link QueryEventObject.QueryBuilder}. If a {@link QueryCache} is set and the query has
+     * both from and to, the events of the already fetched parts of the time range are taken from the cache and only
+     * the rest is fetched from the server.
+     */
+    public List<Event> query(@Nonnull QueryEventObject query) throws EventApiException {
+        QueryCache cache = queryCache;
+        if(cache == null || query.getFrom() == null || query.getTo() == null){
+            return query(query.toUri());
+        }
+        return cache.query(this, query);
+    }
 
-            return restClient.objectMapper.readValue(cr.getEntityInputStream(), new TypeReference<List<Event>>() {});
+    /**
+     * Runs a query built with {@link QueryEventObject.QueryBuilder}, reading only the projected fields of the events
+     * matching the conditions of the projection. Events are filtered while the response is parsed, without binding
+     * them to {@link Event} objects, which saves CPU and garbage when only a few fields of a large result are used.
+     * The {@link QueryCache} isn't used.
+     */
+    public List<ProjectedEvent> query(@Nonnull QueryEventObject query, @Nonnull EventProjection projection) throws EventApiException {
+        RestClient restClient = restClient();
+        ClientResponse cr = openQuery(query.toUri());
+        try{
+            long start = System.nanoTime();
+            JsonParser parser = restClient.objectMapper.getJsonFactory().createJsonParser(cr.getEntityInputStream());
+            try{
+                List<ProjectedEvent> events = projection.readEvents(parser);
+                restClient.metrics.serialization(EventApiMetrics.QUERY, System.nanoTime() - start);
+                return events;
+            }finally {
+                parser.close();
+            }
         }catch(IOException e){
             throw new EventApiException(e.getMessage(), e);
+        }finally {
+            cr.close();
         }
     }
 
+    /**
+     * Lazily iterates over all events matching the given query.
+     *
+     * Events are read one at a time off the response stream, and the next page is only requested once the
+     * current one is consumed, so memory use doesn't depend on the size of the result. The query limit is used
+     * as page size, defaulting to {@link #DEFAULT_PAGE_SIZE}, paging starts at the query offset.
+     *
+     * The returned iterator must be closed if it is not consumed till the end.
+     *
+     * @param query query built using {@link QueryEventObject.QueryBuilder}
+     */
+    public EventIterator queryStream(@Nonnull QueryEventObject query) {
+        return new EventIterator(this, query, query.getLimit() > 0 ? query.getLimit() : DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Sends the query and returns the response positioned at the start of the JSON array of events. Caller
+     * must close the response.
+     */
+    ClientResponse openQuery(String evenQueryUrl) throws EventApiException {
+        logger.debug("Query: "+evenQueryUrl);
+        ClientResponse cr = authorized(restClient().client.resource(evenQueryUrl)).get(ClientResponse.class);
+        if(cr.getStatus() >= 300){
+            String error = String.format("EvenApi.query() returned HTTP status: %s, message: %s",cr.getStatus(), cr.toString());
+            logger.error(error);
+            cr.close();
+            throw new EventApiException(error, cr.getStatus());
+        }
+        return cr;
+    }
+
+    ObjectMapper getObjectMapper() {
+        return restClient().objectMapper;
+    }
+
 
     public boolean delete(@Nonnull String eventUrl) throws EventApiException {
-        logger.info("Delete " + eventUrl);
+        return deleteWithStatus(eventUrl) == 200;
+    }
+
+    /**
+     * Deletes the given events, sending up to 4 requests at a time
+     *
+     * @return result per event URL, with value true if the event was deleted
+     */
+    public BulkResult<Boolean> deleteAll(@Nonnull Collection<String> eventUrls) throws EventApiException {
+        return deleteAll(eventUrls, BulkOptions.DEFAULT);
+    }
 
-        WebResource wr = restClient.client.resource(UriBuilder.fromPath(eventUrl).build());
-        wr.addFilter(new BearerTokenFilter(accessToken));
+    /**
+     * Deletes the given events within the concurrency and rate limits of the options. Failures are reported per
+     * event URL and don't stop the remaining deletes.
+     *
+     * @return result per event URL, with value true if the event was deleted
+     */
+    public BulkResult<Boolean> deleteAll(@Nonnull Collection<String> eventUrls, @Nonnull BulkOptions options) throws EventApiException {
+        return BulkExecutor.execute(eventUrls, options, new BulkExecutor.Call<Boolean>() {
+            @Override
+            public BulkExecutor.Outcome<Boolean> call(String eventUrl) throws EventApiException {
+                int status = deleteWithStatus(eventUrl);
+                return new BulkExecutor.Outcome<Boolean>(status == 200, status);
+            }
+        });
+    }
 
-        try {
-            wr.header("Authorization", createBearerAuthorizationHeader(accessToken));
-        } catch (UnsupportedEncodingException e) {
-            throw new EventApiException(e.getMessage(), e);
+    /**
+     * Reads the given events, sending up to 4 requests at a time
+     */
+    public BulkResult<Event> readEvents(@Nonnull Collection<String> eventUrls) throws EventApiException {
+        return readEvents(eventUrls, BulkOptions.DEFAULT);
+    }
+
+    /**
+     * Reads the given events within the concurrency and rate limits of the options, through the read cache if one is
+     * set. Failures are reported per event URL and don't stop the remaining reads.
+     */
+    public BulkResult<Event> readEvents(@Nonnull Collection<String> eventUrls, @Nonnull BulkOptions options) throws EventApiException {
+        return BulkExecutor.execute(eventUrls, options, new BulkExecutor.Call<Event>() {
+            @Override
+            public BulkExecutor.Outcome<Event> call(String eventUrl) throws EventApiException {
+                return new BulkExecutor.Outcome<Event>(readEvent(eventUrl), 200);
+            }
+        });
+    }
+
+    private int deleteWithStatus(String eventUrl) throws EventApiException {
+        logger.debug("Delete " + eventUrl);
+
+        ClientResponse cr = authorized(restClient().client.resource(eventUrl)).delete(ClientResponse.class);
+        try{
+            // Whatever the status, the event may be gone. Dropped before the response, a read running meanwhile could
+            // cache it again.
+            ReadEventCache cache = readCache;
+            if(cache != null){
+                cache.invalidate(eventUrl);
+            }
+            if(cr.getStatus() >= 300){
+                String error = String.format("EvenApi.delete() returned HTTP status: %s, message: %s",cr.getStatus(), cr.toString());
+                logger.error(error);
+                throw new EventApiException(error, cr.getStatus());
+            }
+            // Removed only once deleted, a query running before the delete could otherwise cache the event again
+            QueryCache queryCache = this.queryCache;
+            if(queryCache != null){
+                String path = eventUrl.endsWith("/") ? eventUrl.substring(0, eventUrl.length() - 1) : eventUrl;
+                queryCache.remove(path.substring(path.lastIndexOf('/') + 1));
+            }
+            return cr.getStatus();
+        }finally {
+            cr.close();
         }
-        ClientResponse cr = wr.delete(ClientResponse.class);
-        if(cr.getStatus() >= 300){
-            String error = String.format("EvenApi.delete() returned HTTP status: %s, message: %s",cr.getStatus(), cr.toString());
-            logger.error(error);
-            throw new EventApiException(error);
+    }
+
+    /**
+     * Validates that the event carries the event data required by the Event API
+     */
+    static void checkPublishable(Event eventRequest) throws EventApiException {
+        if(eventRequest.getEvent() == null){
+            throw new EventApiException("No event data to be sent. Please set event data before publishing");
+        }else if(eventRequest.getEvent().get("title") == null){
+            throw new EventApiException("'title' must be set in the event data");
         }
+    }
 
-        return cr.getStatus() == 200;
+    private WebResource.Builder authorized(WebResource wr) {
+        return wr.header(HttpHeaders.AUTHORIZATION, authorizationHeader);
     }
 
-    private  String createBearerAuthorizationHeader(String token) throws UnsupportedEncodingException {
-        return String.format("Bearer %s", Base64.encode(token.getBytes("UTF-8")));
+    static String createBearerAuthorizationHeader(String token) {
+        return "Bearer " + new String(Base64.encodeBase64(token.getBytes(Charsets.UTF_8)), Charsets.US_ASCII);
     }
 
 
-    public static class RestClient{
+    public static class RestClient implements Closeable {
+        private static volatile RestClient defaultClient;
+
         private Client client;
-        private final ObjectMapper objectMapper = createObjectMapper();
+        private final ObjectMapper objectMapper;
+        private final HttpTransport transport;
+        private final EventApiMetrics metrics;
+        private final RetryFilter retryFilter;
 
         public RestClient() {
+            this(new Builder());
+        }
+
+        /**
+         * @param transport HTTP implementation to send requests with
+         */
+        public RestClient(@Nonnull HttpTransport transport) {
+            this(new Builder().transport(transport));
+        }
+
+        private RestClient(Builder builder) {
+            this.transport = builder.transport != null ? builder.transport : new DefaultHttpTransport();
+            this.objectMapper = createObjectMapper(builder.prettyPrint);
+            this.metrics = builder.metrics;
             ClientConfig cc = new DefaultClientConfig();
             JacksonConfigurator jc = new JacksonConfigurator(objectMapper);
             cc.getSingletons().add(jc);
             cc.getClasses().add(JacksonJsonProvider.class);
-            this.client =  Client.create(cc);
-            this.client.addFilter(new LoggingFilter());
+            this.client =  new Client(transport.createClientHandler(cc), cc);
+
+            // Filters run in reverse order of addition. Logging goes below gzip so that it sees the request entity
+            // before compression.
+            this.client.addFilter(new RequestLoggingFilter(builder.logSampleRate, builder.logMaxEntitySize));
+            if(builder.gzip || builder.gzipRequests){
+                this.client.addFilter(new GZIPContentEncodingFilter(builder.gzipRequests));
+            }
+            if(metrics != EventApiMetrics.NONE){
+                this.client.addFilter(new MetricsFilter(metrics));
+            }
+            // Outside metrics so that time spent waiting for a turn isn't reported as request latency
+            if(builder.throttle != null){
+                this.client.addFilter(new ThrottlingFilter(builder.throttle));
+            }
+            // Outermost so that every attempt waits for its turn and is reported
+            this.retryFilter = builder.retry != null ? new RetryFilter(builder.retry) : null;
+            if(retryFilter != null){
+                this.client.addFilter(retryFilter);
+            }
+        }
+
+        /**
+         * RestClient with default settings shared by the EventApi instances created without a RestClient, created on
+         * first use. Once closed, the next call creates a new one.
+         */
+        public static RestClient getDefault() {
+            RestClient restClient = defaultClient;
+            if(restClient == null){
+                synchronized (RestClient.class){
+                    restClient = defaultClient;
+                    if(restClient == null){
+                        restClient = new RestClient();
+                        defaultClient = restClient;
+                    }
+                }
+            }
+            return restClient;
+        }
+
+        /**
+         * Destroys the Jersey client and closes the transport. EventApi instances using this RestClient can't be
+         * used afterwards, except for the {@link #getDefault() default RestClient} which is created again on the next
+         * request.
+         */
+        @Override
+        public void close() {
+            synchronized (RestClient.class){
+                if(defaultClient == this){
+                    defaultClient = null;
+                }
+            }
+            client.destroy();
+            if(retryFilter != null){
+                retryFilter.close();
+            }
+            transport.close();
         }
 
         public Client getJerseyClient() {
@@ -206,36 +578,104 @@ public class EventApi {
         public ObjectMapper getObjectMapper() {
             return objectMapper;
         }
-    }
 
-    private static ObjectMapper createObjectMapper(){
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
-        mapper.setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
+        public static class Builder {
+            private HttpTransport transport;
+            private boolean prettyPrint;
+            private boolean gzip;
+            private boolean gzipRequests;
+            private int logSampleRate = 1;
+            private int logMaxEntitySize = 4096;
+            private EventApiMetrics metrics = EventApiMetrics.NONE;
+            private ThrottlePolicy throttle;
+            private RetryPolicy retry;
+
+            /**
+             * HTTP implementation to send requests with. Defaults to {@link DefaultHttpTransport}
+             */
+            public Builder transport(@Nonnull HttpTransport transport){
+                this.transport = transport;
+                return this;
+            }
 
-        mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        return mapper;
-    }
+            /**
+             * Indents the JSON sent to the Event API, for debugging. Off by default, events are sent in compact form.
+             */
+            public Builder prettyPrint(boolean prettyPrint){
+                this.prettyPrint = prettyPrint;
+                return this;
+            }
 
-    private class  BearerTokenFilter extends ClientFilter{
+            /**
+             * Sends <code>Accept-Encoding: gzip</code> and decompresses gzip encoded responses, which pays off for
+             * large query results. Off by default.
+             */
+            public Builder acceptGzip(boolean acceptGzip){
+                this.gzip = acceptGzip;
+                return this;
+            }
 
-        private final String accessToken;
+            /**
+             * Compresses request bodies with <code>Content-Encoding: gzip</code>. Responses are then accepted gzip
+             * encoded as well, whatever {@link #acceptGzip(boolean)} is set to. Only enable it if the Event API endpoint
+             * accepts compressed requests. Off by default.
+             */
+            public Builder gzipRequests(boolean gzipRequests){
+                this.gzipRequests = gzipRequests;
+                return this;
+            }
 
-        private BearerTokenFilter(String accessToken) {
-            this.accessToken = accessToken;
-        }
+            /**
+             * Configures request logging. Requests are only logged when DEBUG is enabled for
+             * {@link RequestLoggingFilter}, by default all of them with entities truncated to 4096 bytes.
+             *
+             * @param sampleRate log one in sampleRate requests
+             * @param maxEntitySize maximum number of entity bytes logged per request and response
+             */
+            public Builder requestLogging(int sampleRate, int maxEntitySize){
+                this.logSampleRate = sampleRate;
+                this.logMaxEntitySize = maxEntitySize;
+                return this;
+            }
 
-        @Override
-        public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
-            if (!cr.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)) {
-                try {
-                    cr.getHeaders().add(HttpHeaders.AUTHORIZATION, createBearerAuthorizationHeader(accessToken));
-                } catch (UnsupportedEncodingException e) {
-                    throw new RuntimeException(e);
-                }
+            /**
+             * Reports latency, status codes, payload sizes and serialization time of every call, for example to an
+             * {@link InMemoryEventApiMetrics} or {@link JmxEventApiMetrics}.
+             */
+            public Builder metrics(@Nonnull EventApiMetrics metrics){
+                this.metrics = metrics;
+                return this;
             }
-            return getNext().handle(cr);
 
+            /**
+             * Throttles requests on the client side, with a rate limit per access token and a concurrency limit
+             * that adapts to 429 and 503 responses. Not throttled by default.
+             */
+            public Builder throttle(@Nonnull ThrottlePolicy throttle){
+                this.throttle = throttle;
+                return this;
+            }
+
+            /**
+             * Retries failed requests and optionally hedges slow GET requests. Requests aren't retried by default.
+             */
+            public Builder retry(@Nonnull RetryPolicy retry){
+                this.retry = retry;
+                return this;
+            }
+
+            public RestClient build() {
+                return new RestClient(this);
+            }
         }
     }
+
+    static ObjectMapper createObjectMapper(boolean prettyPrint){
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(SerializationConfig.Feature.INDENT_OUTPUT, prettyPrint);
+        mapper.setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
+
+        mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
 }
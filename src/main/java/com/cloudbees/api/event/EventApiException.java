@@ -4,11 +4,29 @@ package com.cloudbees.api.event;
  * @author Vivek Pandey
  */
 public class EventApiException extends Exception {
+    private final int statusCode;
+
     public EventApiException(String message) {
-        super(message);
+        this(message, 0);
     }
 
     public EventApiException(String message, Throwable cause) {
         super(message, cause);
+        this.statusCode = 0;
+    }
+
+    /**
+     * @param statusCode HTTP status returned by the Event API
+     */
+    public EventApiException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * HTTP status returned by the Event API, 0 if the error didn't come from an HTTP response
+     */
+    public int getStatusCode() {
+        return statusCode;
     }
 }
@@ -0,0 +1,73 @@
+package com.cloudbees.api.event;
+
+/**
+ * Receives measurements of the calls made through an {@link EventApi.RestClient}, see
+ * {@link EventApi.RestClient.Builder#metrics(EventApiMetrics)}.
+ *
+ * Operations are named after the EventApi methods: {@link #PUBLISH}, {@link #READ_EVENT}, {@link #QUERY} and
+ * {@link #DELETE}. Implementations are called on the request threads and must be thread safe and cheap.
+ *
+ * {@link InMemoryEventApiMetrics} keeps the measurements in memory, {@link JmxEventApiMetrics} exposes them over JMX.
+ */
+public interface EventApiMetrics {
+    String PUBLISH = "publish";
+    String READ_EVENT = "readEvent";
+    String QUERY = "query";
+    String DELETE = "delete";
+
+    /**
+     * A request is about to be sent
+     */
+    void requestStarted(String operation);
+
+    /**
+     * Response headers were received
+     *
+     * @param status HTTP status code
+     * @param latencyNanos time from sending the request to receiving the response headers
+     * @param requestBytes size of the request entity as sent on the wire, 0 if there was none
+     */
+    void requestCompleted(String operation, int status, long latencyNanos, long requestBytes);
+
+    /**
+     * The request failed without a response, for example on a connection error or timeout
+     */
+    void requestFailed(String operation, long latencyNanos, Throwable cause);
+
+    /**
+     * The response entity was read to the end or closed
+     *
+     * @param responseBytes number of entity bytes read
+     */
+    void responseRead(String operation, long responseBytes);
+
+    /**
+     * Time spent converting between {@link Event} objects and JSON for one call
+     */
+    void serialization(String operation, long nanos);
+
+    /**
+     * Discards all measurements
+     */
+    EventApiMetrics NONE = new EventApiMetrics() {
+        @Override
+        public void requestStarted(String operation) {
+        }
+
+        @Override
+        public void requestCompleted(String operation, int status, long latencyNanos, long requestBytes) {
+        }
+
+        @Override
+        public void requestFailed(String operation, long latencyNanos, Throwable cause) {
+        }
+
+        @Override
+        public void responseRead(String operation, long responseBytes) {
+        }
+
+        @Override
+        public void serialization(String operation, long nanos) {
+        }
+    };
+}
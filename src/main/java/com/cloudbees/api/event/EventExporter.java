@@ -0,0 +1,478 @@
+package com.cloudbees.api.event;
+
+import com.google.common.io.CountingOutputStream;
+import com.sun.jersey.api.client.ClientResponse;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.util.MinimalPrettyPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports all events matching a query to newline-delimited JSON files, one event per line, gzip compressed by default.
+ *
+ * Events are copied token by token from the query responses to the files without binding them to {@link Event}
+ * objects. Files are written through a {@link FileChannel} behind a large buffer and are named
+ * <code>prefix-00000.ndjson.gz</code>, <code>prefix-00001.ndjson.gz</code>... A new file is started once the current
+ * one reaches <code>maxFileSize</code> bytes, so that files can be processed in parallel.
+ *
+ * Every <code>checkpointEvery</code> events, when a file is complete and at the end of the export, the written data is
+ * forced to disk and the query offset reached is saved to <code>prefix.checkpoint</code>. Each checkpoint closes a
+ * gzip member, the files are concatenations of gzip members which gzip and {@link java.util.zip.GZIPInputStream}
+ * read as one stream. If an export is interrupted, calling {@link #export()} again on the same directory drops what
+ * was written after the last checkpoint and resumes the query at its offset. Resuming by offset assumes the events
+ * matching the query don't change in the meantime, set the query's <code>to</code> time in the past.
+ *
+ * <pre>
+ *     QueryEventObject query = new QueryEventObject.QueryBuilder(eventApi.eventApiUrl)
+ *             .account("acme")
+ *             .from(yearStart)
+ *             .to(yearEnd)
+ *             .limit(1000)                    // page size
+ *             .build();
+ *     EventExporter exporter = new EventExporter.Builder(eventApi, query, new File("/exports/acme-2014"))
+ *             .maxFileSize(256 * 1024 * 1024)
+ *             .build();
+ *     long count = exporter.export();
+ * </pre>
+ */
+public class EventExporter {
+    private static final Logger logger = LoggerFactory.getLogger(EventExporter.class);
+
+    private final EventApi eventApi;
+    private final QueryEventObject query;
+    private final int pageSize;
+    private final File directory;
+    private final String prefix;
+    private final boolean gzip;
+    private final long maxFileSize;
+    private final int bufferSize;
+    private final int checkpointEvery;
+
+    // Progress of the current export, as of the last checkpoint for the checkpointed fields
+    private int fileIndex;
+    private long fileLength;
+    private long offset;
+    private long eventCount;
+    private Long lastActivationTime;
+    private boolean done;
+
+    // Output of the current file
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private CountingOutputStream counter;
+    private OutputStream member;
+    private JsonGenerator generator;
+    private int sinceCheckpoint;
+
+    private EventExporter(Builder builder) {
+        this.eventApi = builder.eventApi;
+        this.query = builder.query;
+        this.pageSize = query.getLimit() > 0 ? query.getLimit() : EventApi.DEFAULT_PAGE_SIZE;
+        this.directory = builder.directory;
+        this.prefix = builder.prefix;
+        this.gzip = builder.gzip;
+        this.maxFileSize = builder.maxFileSize;
+        this.bufferSize = builder.bufferSize;
+        this.checkpointEvery = builder.checkpointEvery;
+    }
+
+    /**
+     * Exports the events, resuming from the last checkpoint of a previous export to the same directory and prefix.
+     * Returns immediately if that export was complete.
+     *
+     * @return number of events exported, including those exported before resuming
+     */
+    public synchronized long export() throws EventApiException {
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new EventApiException("Failed to create export directory "+directory);
+        }
+        RandomAccessFile lockFile = null;
+        FileLock fileLock = null;
+        try {
+            lockFile = new RandomAccessFile(new File(directory, prefix + ".lock"), "rw");
+            try {
+                fileLock = lockFile.getChannel().tryLock();
+            } catch (OverlappingFileLockException e) {
+                fileLock = null;
+            }
+            if(fileLock == null){
+                throw new EventApiException("Export "+prefix+" in "+directory+" is run by another EventExporter");
+            }
+            loadCheckpoint();
+            if(done){
+                return eventCount;
+            }
+            if(offset > 0){
+                logger.info("Resuming export "+prefix+" in "+directory+" after "+eventCount+" events");
+            }
+            openFile();
+            while(exportPage()){
+                // next page
+            }
+            done = true;
+            closeFile();
+            checkpoint();
+            return eventCount;
+        } catch (IOException e) {
+            throw new EventApiException("Failed to export events to "+directory+": "+e.getMessage(), e);
+        } finally {
+            closeQuietly();
+            try {
+                if(fileLock != null){
+                    fileLock.release();
+                }
+                if(lockFile != null){
+                    lockFile.close();
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to release "+new File(directory, prefix + ".lock")+": "+e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Files written so far, in order
+     */
+    public synchronized List<File> getFiles() {
+        List<File> files = new ArrayList<File>();
+        for(int i = 0; dataFile(i).exists(); i++){
+            files.add(dataFile(i));
+        }
+        return files;
+    }
+
+    /**
+     * Copies one page of the query result
+     *
+     * @return whether there may be more pages
+     */
+    private boolean exportPage() throws EventApiException, IOException {
+        QueryEventObject page = new QueryEventObject.QueryBuilder(query)
+                .limit(pageSize)
+                .offset(query.getOffset() + (int) offset)
+                .build();
+        ClientResponse response = eventApi.openQuery(page.toUri());
+        JsonParser parser = null;
+        try {
+            parser = eventApi.getObjectMapper().getJsonFactory().createJsonParser(response.getEntityInputStream());
+            if(parser.nextToken() != JsonToken.START_ARRAY){
+                throw new EventApiException("Expected JSON array of events from "+page.toUri());
+            }
+            int read = 0;
+            while(parser.nextToken() == JsonToken.START_OBJECT){
+                copyEvent(parser);
+                read++;
+                offset++;
+                eventCount++;
+                if(++sinceCheckpoint >= checkpointEvery){
+                    checkpoint();
+                }
+                if(maxFileSize > 0 && fileLength + counter.getCount() >= maxFileSize){
+                    closeFile();
+                    fileIndex++;
+                    fileLength = 0;
+                    checkpoint();
+                    openFile();
+                }
+            }
+            return read == pageSize;
+        } finally {
+            if(parser != null){
+                parser.close();
+            }
+            response.close();
+        }
+    }
+
+    /**
+     * Copies the event the parser is at to the current file, noting its activation time
+     */
+    private void copyEvent(JsonParser parser) throws IOException {
+        if(generator == null){
+            startMember();
+        }
+        generator.copyCurrentEvent(parser);
+        int depth = 1;
+        boolean activationTime = false;
+        while(depth > 0){
+            JsonToken token = parser.nextToken();
+            if(token == null){
+                throw new IOException("Unexpected end of query response");
+            }
+            if(depth == 1 && token == JsonToken.FIELD_NAME){
+                activationTime = "activation_time".equals(parser.getCurrentName());
+            }else if(activationTime){
+                if(token == JsonToken.VALUE_NUMBER_INT){
+                    lastActivationTime = parser.getLongValue();
+                }
+                activationTime = false;
+            }
+            if(token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY){
+                depth++;
+            }else if(token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY){
+                depth--;
+            }
+            generator.copyCurrentEvent(parser);
+        }
+    }
+
+    /**
+     * Starts a gzip member, or a plain section, at the end of the current file
+     */
+    private void startMember() throws IOException {
+        OutputStream out = new FilterOutputStream(counter) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Keeps the file open for the next member
+                flush();
+            }
+        };
+        member = gzip ? new GZIPOutputStream(out, bufferSize) : out;
+        generator = eventApi.getObjectMapper().getJsonFactory().createJsonGenerator(member, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setPrettyPrinter(new MinimalPrettyPrinter() {
+            @Override
+            public void writeRootValueSeparator(JsonGenerator jg) throws IOException {
+                jg.writeRaw('\n');
+            }
+        });
+    }
+
+    /**
+     * Ends the current member and forces the file to disk
+     */
+    private void endMember() throws IOException {
+        if(generator != null){
+            generator.writeRaw('\n');
+            generator.close();
+            generator = null;
+            member.close();
+            member = null;
+        }
+        counter.flush();
+        channel.force(false);
+    }
+
+    /**
+     * Forces what was written to disk and saves the progress
+     */
+    private void checkpoint() throws IOException {
+        if(channel != null){
+            endMember();
+            fileLength += counter.getCount();
+            counter = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize));
+        }
+        sinceCheckpoint = 0;
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("file", String.valueOf(fileIndex));
+        checkpoint.setProperty("fileLength", String.valueOf(fileLength));
+        checkpoint.setProperty("offset", String.valueOf(offset));
+        checkpoint.setProperty("eventCount", String.valueOf(eventCount));
+        if(lastActivationTime != null){
+            checkpoint.setProperty("lastActivationTime", String.valueOf(lastActivationTime));
+        }
+        checkpoint.setProperty("done", String.valueOf(done));
+        File tmp = new File(directory, prefix + ".checkpoint.tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            checkpoint.store(out, "EventExporter checkpoint, offset is relative to the query offset");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        File target = checkpointFile();
+        if(!tmp.renameTo(target) && !(target.delete() && tmp.renameTo(target))){
+            throw new IOException("Failed to rename "+tmp+" to "+target);
+        }
+    }
+
+    private void loadCheckpoint() throws IOException {
+        fileIndex = 0;
+        fileLength = 0;
+        offset = 0;
+        eventCount = 0;
+        lastActivationTime = null;
+        done = false;
+        File file = checkpointFile();
+        if(!file.exists()){
+            return;
+        }
+        Properties checkpoint = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            checkpoint.load(in);
+        } finally {
+            in.close();
+        }
+        fileIndex = Integer.parseInt(checkpoint.getProperty("file", "0"));
+        fileLength = Long.parseLong(checkpoint.getProperty("fileLength", "0"));
+        offset = Long.parseLong(checkpoint.getProperty("offset", "0"));
+        eventCount = Long.parseLong(checkpoint.getProperty("eventCount", "0"));
+        String last = checkpoint.getProperty("lastActivationTime");
+        lastActivationTime = last != null ? Long.valueOf(last) : null;
+        done = Boolean.parseBoolean(checkpoint.getProperty("done", "false"));
+    }
+
+    /**
+     * Opens the current file at its checkpointed length, dropping anything written after the last checkpoint
+     */
+    private void openFile() throws IOException {
+        for(int i = fileIndex + 1; dataFile(i).exists(); i++){
+            if(!dataFile(i).delete()){
+                throw new IOException("Failed to delete "+dataFile(i));
+            }
+        }
+        file = new RandomAccessFile(dataFile(fileIndex), "rw");
+        channel = file.getChannel();
+        if(channel.size() > fileLength){
+            channel.truncate(fileLength);
+        }
+        channel.position(fileLength);
+        counter = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize));
+    }
+
+    private void closeFile() throws IOException {
+        endMember();
+        fileLength += counter.getCount();
+        counter = null;
+        file.close();
+        file = null;
+        channel = null;
+        // The export ended right after a split
+        if(fileLength == 0 && !dataFile(fileIndex).delete()){
+            throw new IOException("Failed to delete "+dataFile(fileIndex));
+        }
+    }
+
+    /**
+     * Closes the current file after a failure, what wasn't checkpointed is dropped by the next export
+     */
+    private void closeQuietly() {
+        generator = null;
+        member = null;
+        counter = null;
+        channel = null;
+        if(file != null){
+            try {
+                file.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close "+dataFile(fileIndex)+": "+e.getMessage());
+            }
+            file = null;
+        }
+    }
+
+    private File dataFile(int index) {
+        return new File(directory, String.format("%s-%05d.ndjson%s", prefix, index, gzip ? ".gz" : ""));
+    }
+
+    private File checkpointFile() {
+        return new File(directory, prefix + ".checkpoint");
+    }
+
+    public static class Builder {
+        private final EventApi eventApi;
+        private final QueryEventObject query;
+        private final File directory;
+        private String prefix = "events";
+        private boolean gzip = true;
+        private long maxFileSize;
+        private int bufferSize = 1024 * 1024;
+        private int checkpointEvery = 10000;
+
+        /**
+         * @param query events to export, its limit is used as page size
+         * @param directory directory the files are written to, created if needed
+         */
+        public Builder(@Nonnull EventApi eventApi, @Nonnull QueryEventObject query, @Nonnull File directory) {
+            this.eventApi = eventApi;
+            this.query = query;
+            this.directory = directory;
+        }
+
+        /**
+         * Prefix of the file names, to run several exports to the same directory. Defaults to <code>events</code>.
+         */
+        public Builder prefix(@Nonnull String prefix){
+            this.prefix = prefix;
+            return this;
+        }
+
+        /**
+         * Compresses the files with gzip. On by default.
+         */
+        public Builder gzip(boolean gzip){
+            this.gzip = gzip;
+            return this;
+        }
+
+        /**
+         * Starts a new file once the current one reaches about this many bytes, as written to disk. Files aren't
+         * split by default.
+         */
+        public Builder maxFileSize(long maxFileSize){
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * Size of the write and compression buffers. Defaults to 1 MiB.
+         */
+        public Builder bufferSize(int bufferSize){
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Number of events between checkpoints. Defaults to 10000.
+         */
+        public Builder checkpointEvery(int checkpointEvery){
+            this.checkpointEvery = checkpointEvery;
+            return this;
+        }
+
+        public EventExporter build() throws EventApiException {
+            if(prefix.isEmpty() || prefix.contains(File.separator)){
+                throw new EventApiException("Invalid prefix: "+prefix);
+            }
+            if(maxFileSize < 0){
+                throw new EventApiException("maxFileSize must not be negative");
+            }
+            if(bufferSize <= 0){
+                throw new EventApiException("bufferSize must be greater than 0");
+            }
+            if(checkpointEvery <= 0){
+                throw new EventApiException("checkpointEvery must be greater than 0");
+            }
+            return new EventExporter(this);
+        }
+    }
+}
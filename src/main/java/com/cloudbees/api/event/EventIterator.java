@@ -0,0 +1,130 @@
+package com.cloudbees.api.event;
+
+import com.sun.jersey.api.client.ClientResponse;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over the events of a query, returned by {@link EventApi#queryStream(QueryEventObject)}.
+ *
+ * Each page of the query result is parsed incrementally with a streaming {@link JsonParser}, only the event being
+ * returned is bound to an {@link Event} object. When a page is exhausted and it was a full page, the next one is
+ * requested by advancing the offset.
+ *
+ * Failures talking to the Event API surface as {@link RuntimeException} with the {@link EventApiException} as cause,
+ * since {@link Iterator} can't throw checked exceptions.
+ */
+public class EventIterator implements Iterator<Event>, Closeable {
+    private final EventApi eventApi;
+    private final QueryEventObject query;
+    private final int pageSize;
+
+    private int offset;
+    private int readInPage;
+    private ClientResponse response;
+    private JsonParser parser;
+    private Event next;
+    private boolean done;
+
+    EventIterator(EventApi eventApi, QueryEventObject query, int pageSize) {
+        this.eventApi = eventApi;
+        this.query = query;
+        this.pageSize = pageSize;
+        this.offset = query.getOffset();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(next != null){
+            return true;
+        }
+        if(done){
+            return false;
+        }
+        try {
+            next = readNext();
+        } catch (EventApiException e) {
+            close();
+            throw new RuntimeException(e.getMessage(), e);
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException(e.getMessage(), new EventApiException(e.getMessage(), e));
+        }
+        return next != null;
+    }
+
+    @Override
+    public Event next() {
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        Event event = next;
+        next = null;
+        return event;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Releases the connection of the page being read. Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        done = true;
+        closePage();
+    }
+
+    private Event readNext() throws EventApiException, IOException {
+        while(true){
+            if(parser == null){
+                openPage();
+            }
+            JsonToken token = parser.nextToken();
+            if(token == JsonToken.START_OBJECT){
+                readInPage++;
+                return eventApi.getObjectMapper().readValue(parser, Event.class);
+            }
+
+            // End of page
+            closePage();
+            offset += readInPage;
+            if(readInPage < pageSize){
+                done = true;
+                return null;
+            }
+        }
+    }
+
+    private void openPage() throws EventApiException, IOException {
+        QueryEventObject page = new QueryEventObject.QueryBuilder(query).limit(pageSize).offset(offset).build();
+        response = eventApi.openQuery(page.toUri());
+        parser = eventApi.getObjectMapper().getJsonFactory().createJsonParser(response.getEntityInputStream());
+        readInPage = 0;
+        if(parser.nextToken() != JsonToken.START_ARRAY){
+            throw new EventApiException("Expected JSON array of events from "+page.toUri());
+        }
+    }
+
+    private void closePage() {
+        if(parser != null){
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // ignore, the response is closed below anyway
+            }
+            parser = null;
+        }
+        if(response != null){
+            response.close();
+            response = null;
+        }
+    }
+}
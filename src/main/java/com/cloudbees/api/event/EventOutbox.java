@@ -0,0 +1,563 @@
+package com.cloudbees.api.event;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead outbox for events. {@link #append(Event)} writes the event to a local log and returns at once, a
+ * background sender publishes logged events in order through an {@link EventApi}, retrying with exponential backoff
+ * while the Event API can't be reached. Events not yet delivered when the outbox is closed, or when the process dies,
+ * are sent once an outbox is opened again on the same directory.
+ *
+ * The log is a sequence of memory-mapped segment files of fixed size. Each record is the event's idempotency key and
+ * JSON preceded by their length and CRC32, a checkpoint file records the position of the next event to deliver. A
+ * segment is deleted once all its events are delivered, and appending fails when the undelivered events fill
+ * <code>maxDiskUsage</code>.
+ *
+ * Delivery is at least once: an event whose publish succeeded right before a crash, or whose response was lost, is sent
+ * again. Every attempt carries the event's idempotency key, generated by {@link #append(Event)} if the event has none,
+ * so that an Event API honoring the {@value RetryPolicy#IDEMPOTENCY_KEY_HEADER} header creates it only once. Events
+ * rejected with a client error other than 401, 403, 408 or 429 are logged and skipped, as retrying them can't succeed.
+ * Delivered events don't invalidate the {@link QueryCache} of the EventApi, like events published by another client.
+ *
+ * <pre>
+ *     EventOutbox outbox = new EventOutbox.Builder(eventApi, new File("/var/lib/myagent/outbox"))
+ *             .maxDiskUsage(512 * 1024 * 1024)
+ *             .build();
+ *
+ *     outbox.append(event);
+ *     ...
+ *     outbox.close(); // undelivered events stay on disk
+ * </pre>
+ */
+public class EventOutbox implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EventOutbox.class);
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOCK_FILE = "lock";
+
+    /**
+     * Record header: int length followed by int CRC32 of the record bytes. The record is the idempotency key length
+     * as a short, the UTF-8 key and the event JSON.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    private final EventApi eventApi;
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final boolean forceOnAppend;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final RandomAccessFile lockFile;
+    private final FileLock fileLock;
+    private final MappedByteBuffer checkpoint;
+
+    /**
+     * Guards the segments and read and write positions, and is notified when they change
+     */
+    private final Object lock = new Object();
+    private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+    private Segment writeSegment;
+    private int readPosition;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final ExecutorService sender;
+    private volatile boolean closed;
+
+    private EventOutbox(Builder builder) throws IOException, EventApiException {
+        this.eventApi = builder.eventApi;
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.maxSegments = (int) Math.max(2, builder.maxDiskUsage / builder.segmentSize);
+        this.forceOnAppend = builder.forceOnAppend;
+        this.initialBackoffMillis = builder.initialBackoffMillis;
+        this.maxBackoffMillis = builder.maxBackoffMillis;
+
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new EventApiException("Failed to create outbox directory "+directory);
+        }
+        this.lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        FileLock fileLock;
+        try {
+            fileLock = lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if(fileLock == null){
+            lockFile.close();
+            throw new EventApiException("Outbox directory "+directory+" is used by another EventOutbox");
+        }
+        this.fileLock = fileLock;
+        try {
+            this.checkpoint = map(new File(directory, CHECKPOINT_FILE), 16);
+            recover();
+        } catch (IOException e) {
+            fileLock.release();
+            lockFile.close();
+            throw e;
+        }
+
+        this.sender = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-outbox-sender-%d").build());
+        sender.execute(new Sender());
+    }
+
+    /**
+     * Opens the existing segments and positions the reader at the checkpoint
+     */
+    private void recover() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        Arrays.sort(files);
+
+        long checkpointSegment = checkpoint.getLong(0);
+        int checkpointPosition = checkpoint.getInt(8);
+        CRC32 crc = new CRC32();
+        crc.update(toBytes(checkpointSegment, checkpointPosition));
+        boolean validCheckpoint = (int) crc.getValue() == checkpoint.getInt(12);
+
+        for(File file : files){
+            long index = Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+            if(validCheckpoint && index < checkpointSegment){
+                // delivered, deletion was interrupted
+                delete(file);
+                continue;
+            }
+            Segment segment = new Segment(index, file, map(file, segmentSize));
+            int start = validCheckpoint && index == checkpointSegment ? checkpointPosition : 0;
+            pending.addAndGet(segment.scan(start));
+            segments.put(index, segment);
+        }
+
+        if(segments.isEmpty()){
+            long index = validCheckpoint ? checkpointSegment : 0;
+            segments.put(index, openSegment(index));
+        }
+        this.writeSegment = segments.lastEntry().getValue();
+        this.readPosition = validCheckpoint && segments.firstKey() == checkpointSegment ? checkpointPosition : 0;
+
+        // Clear the header of a record torn by a crash so that it isn't mistaken for the end of the next one
+        if(writeSegment.limit + HEADER_SIZE <= segmentSize){
+            writeSegment.buffer.putLong(writeSegment.limit, 0);
+        }
+        if(pending.get() > 0){
+            logger.info("Recovered "+pending.get()+" undelivered events from outbox "+directory);
+        }
+    }
+
+    /**
+     * Logs an event for delivery. Returns once the event is written to the outbox, which is immediately unless
+     * <code>forceOnAppend</code> is set.
+     *
+     * @throws EventApiException if the event has no event data, the outbox is closed or full, or writing it failed
+     */
+    public void append(@Nonnull Event event) throws EventApiException {
+        EventApi.checkPublishable(event);
+        byte[] json;
+        try {
+            json = eventApi.getObjectMapper().writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new EventApiException(e.getMessage(), e);
+        }
+        String idempotencyKey = event.getIdempotencyKey() != null
+                ? event.getIdempotencyKey()
+                : UUID.randomUUID().toString();
+        byte[] key = idempotencyKey.getBytes(Charsets.UTF_8);
+        if(key.length > Short.MAX_VALUE){
+            throw new EventApiException("Idempotency key of "+key.length+" bytes is too long");
+        }
+        byte[] entity = ByteBuffer.allocate(2 + key.length + json.length)
+                .putShort((short) key.length)
+                .put(key)
+                .put(json)
+                .array();
+        if(entity.length + HEADER_SIZE > segmentSize){
+            throw new EventApiException(String.format("Event of %d bytes doesn't fit in an outbox segment of %d bytes",
+                    entity.length, segmentSize));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(entity);
+
+        synchronized (lock){
+            if(closed){
+                throw new EventApiException("EventOutbox is closed");
+            }
+            Segment segment = writeSegment;
+            int position = segment.limit;
+            if(position + HEADER_SIZE + entity.length > segmentSize){
+                if(segments.size() >= maxSegments){
+                    throw new EventApiException(String.format("Outbox is full, %d undelivered events use %d bytes",
+                            pending.get(), (long) segments.size() * segmentSize));
+                }
+                try {
+                    segment = openSegment(segment.index + 1);
+                } catch (IOException e) {
+                    throw new EventApiException("Failed to create outbox segment: "+e.getMessage(), e);
+                }
+                writeSegment.buffer.force();
+                segments.put(segment.index, segment);
+                writeSegment = segment;
+                position = 0;
+            }
+
+            // Length goes last, a record is only visible once complete
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(position + HEADER_SIZE);
+            buffer.put(entity);
+            segment.buffer.putInt(position + 4, (int) crc.getValue());
+            segment.buffer.putInt(position, entity.length);
+            if(forceOnAppend){
+                segment.buffer.force();
+            }
+            segment.limit = position + HEADER_SIZE + entity.length;
+            pending.incrementAndGet();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Number of events not delivered yet
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Waits until all events appended so far are delivered
+     *
+     * @return true if the outbox is empty, false if the timeout elapsed first
+     */
+    public boolean awaitDelivery(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        synchronized (lock){
+            long remaining;
+            while(pending.get() > 0 && (remaining = deadline - System.currentTimeMillis()) > 0){
+                lock.wait(remaining);
+            }
+            return pending.get() == 0;
+        }
+    }
+
+    /**
+     * Stops the sender once the event it is sending, if any, is done and flushes the outbox to disk. Undelivered
+     * events are kept and sent by the next outbox opened on the same directory.
+     */
+    @Override
+    public void close() {
+        synchronized (lock){
+            if(closed){
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        sender.shutdown();
+        try {
+            sender.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock){
+            for(Segment segment : segments.values()){
+                segment.buffer.force();
+            }
+            checkpoint.force();
+        }
+        try {
+            fileLock.release();
+            lockFile.close();
+        } catch (IOException e) {
+            logger.warn("Failed to release outbox lock: "+e.getMessage());
+        }
+    }
+
+    private class Sender implements Runnable {
+        @Override
+        public void run() {
+            long backoff = initialBackoffMillis;
+            byte[] entity;
+            while((entity = next()) != null){
+                boolean delivered;
+                try {
+                    ByteBuffer record = ByteBuffer.wrap(entity);
+                    byte[] key = new byte[record.getShort()];
+                    record.get(key);
+                    byte[] json = new byte[record.remaining()];
+                    record.get(json);
+                    // The same key on every attempt, the previous one may have created the event
+                    eventApi.publish(json, new String(key, Charsets.UTF_8));
+                    delivered = true;
+                } catch (EventApiException e) {
+                    delivered = isPermanentFailure(e.getStatusCode());
+                    if(delivered){
+                        logger.error("Dropping event rejected by the Event API: "+e.getMessage());
+                    }else{
+                        logger.warn("Failed to publish event from outbox, retrying in "+backoff+"ms: "+e.getMessage());
+                    }
+                } catch (Throwable e) {
+                    delivered = false;
+                    logger.warn("Failed to publish event from outbox, retrying in "+backoff+"ms: "+e.getMessage());
+                }
+
+                if(delivered){
+                    advance(entity.length);
+                    backoff = initialBackoffMillis;
+                }else{
+                    pause(backoff);
+                    backoff = Math.min(backoff * 2, maxBackoffMillis);
+                }
+            }
+        }
+
+        /**
+         * Waits for the next undelivered event, null once the outbox is closed
+         */
+        private byte[] next() {
+            synchronized (lock){
+                while(!closed){
+                    Segment segment = segments.firstEntry().getValue();
+                    if(readPosition < segment.limit){
+                        int length = segment.buffer.getInt(readPosition);
+                        byte[] entity = new byte[length];
+                        ByteBuffer buffer = segment.buffer.duplicate();
+                        buffer.position(readPosition + HEADER_SIZE);
+                        buffer.get(entity);
+                        return entity;
+                    }
+                    if(segment != writeSegment){
+                        segments.remove(segment.index);
+                        readPosition = 0;
+                        writeCheckpoint();
+                        delete(segment.file);
+                        continue;
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+                return null;
+            }
+        }
+
+        private void advance(int length) {
+            synchronized (lock){
+                readPosition += HEADER_SIZE + length;
+                pending.decrementAndGet();
+                writeCheckpoint();
+                lock.notifyAll();
+            }
+        }
+
+        private void pause(long millis) {
+            long deadline = System.currentTimeMillis() + millis;
+            synchronized (lock){
+                long remaining;
+                while(!closed && (remaining = deadline - System.currentTimeMillis()) > 0){
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Client errors that will fail the same way however often the event is sent. Authorization failures are retried
+     * as the access token may be replaced in the meantime.
+     */
+    private static boolean isPermanentFailure(int status) {
+        return status >= 400 && status < 500 && status != 401 && status != 403 && status != 408 && status != 429;
+    }
+
+    private void writeCheckpoint() {
+        long segment = segments.firstKey();
+        CRC32 crc = new CRC32();
+        crc.update(toBytes(segment, readPosition));
+        checkpoint.putLong(0, segment);
+        checkpoint.putInt(8, readPosition);
+        checkpoint.putInt(12, (int) crc.getValue());
+    }
+
+    private static byte[] toBytes(long segment, int position) {
+        return ByteBuffer.allocate(12).putLong(segment).putInt(position).array();
+    }
+
+    private Segment openSegment(long index) throws IOException {
+        File file = new File(directory, String.format("%020d%s", index, SEGMENT_SUFFIX));
+        return new Segment(index, file, map(file, segmentSize));
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void delete(File file) {
+        // A mapped file can't be deleted on some platforms, it is retried when the outbox is opened again
+        if(!file.delete()){
+            logger.warn("Failed to delete delivered outbox segment "+file);
+        }
+    }
+
+    private static class Segment {
+        private final long index;
+        private final File file;
+        private final MappedByteBuffer buffer;
+
+        /**
+         * End of the last complete record
+         */
+        private volatile int limit;
+
+        private Segment(long index, File file, MappedByteBuffer buffer) {
+            this.index = index;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Finds the end of the valid records and counts those at or after the given position
+         */
+        private long scan(int start) {
+            long count = 0;
+            int position = 0;
+            CRC32 crc = new CRC32();
+            while(position + HEADER_SIZE <= buffer.capacity()){
+                int length = buffer.getInt(position);
+                if(length <= 0 || position + HEADER_SIZE + length > buffer.capacity()){
+                    break;
+                }
+                byte[] entity = new byte[length];
+                ByteBuffer record = buffer.duplicate();
+                record.position(position + HEADER_SIZE);
+                record.get(entity);
+                crc.reset();
+                crc.update(entity);
+                if((int) crc.getValue() != buffer.getInt(position + 4)){
+                    logger.warn("Outbox segment "+file+" is truncated at a corrupted record at "+position);
+                    break;
+                }
+                if(position >= start){
+                    count++;
+                }
+                position += HEADER_SIZE + length;
+            }
+            limit = position;
+            return count;
+        }
+    }
+
+    public static class Builder {
+        private final EventApi eventApi;
+        private final File directory;
+        private int segmentSize = 16 * 1024 * 1024;
+        private long maxDiskUsage = 256L * 1024 * 1024;
+        private boolean forceOnAppend;
+        private long initialBackoffMillis = 1000;
+        private long maxBackoffMillis = TimeUnit.MINUTES.toMillis(5);
+
+        /**
+         * @param eventApi EventApi used to send the events
+         * @param directory directory holding the outbox files, created if missing. Only one outbox can use it at a time.
+         */
+        public Builder(@Nonnull EventApi eventApi, @Nonnull File directory) {
+            this.eventApi = eventApi;
+            this.directory = directory;
+        }
+
+        /**
+         * Size of each segment file, which bounds the size of a single event. Defaults to 16MB.
+         */
+        public Builder segmentSize(int bytes){
+            this.segmentSize = bytes;
+            return this;
+        }
+
+        /**
+         * Disk space undelivered events may use before {@link EventOutbox#append(Event)} fails. Defaults to 256MB.
+         */
+        public Builder maxDiskUsage(long bytes){
+            this.maxDiskUsage = bytes;
+            return this;
+        }
+
+        /**
+         * Forces every appended event to the storage device before {@link EventOutbox#append(Event)} returns, so
+         * it also survives an operating system crash or power loss. Off by default, events are then written to disk
+         * by the operating system and survive a crash of the JVM.
+         */
+        public Builder forceOnAppend(boolean forceOnAppend){
+            this.forceOnAppend = forceOnAppend;
+            return this;
+        }
+
+        /**
+         * Delay before retrying a failed publish, doubled after each failure up to the maximum. Defaults to 1 second
+         * and 5 minutes.
+         */
+        public Builder retryBackoff(long initial, long max, @Nonnull TimeUnit unit){
+            this.initialBackoffMillis = unit.toMillis(initial);
+            this.maxBackoffMillis = unit.toMillis(max);
+            return this;
+        }
+
+        /**
+         * Opens the outbox and starts sending the events left undelivered by a previous outbox on the same directory
+         */
+        public EventOutbox build() throws EventApiException {
+            if(segmentSize <= HEADER_SIZE){
+                throw new EventApiException("segmentSize must be greater than "+HEADER_SIZE);
+            }
+            if(maxDiskUsage < segmentSize){
+                throw new EventApiException("maxDiskUsage must be at least segmentSize");
+            }
+            if(initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis){
+                throw new EventApiException("retryBackoff must be positive with max not less than initial");
+            }
+            try {
+                return new EventOutbox(this);
+            } catch (IOException e) {
+                throw new EventApiException("Failed to open outbox in "+directory+": "+e.getMessage(), e);
+            }
+        }
+    }
+}
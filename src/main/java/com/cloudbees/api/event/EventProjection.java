@@ -0,0 +1,417 @@
+package com.cloudbees.api.event;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fields to keep and conditions to match when reading query results with
+ * {@link EventApi#query(QueryEventObject, EventProjection)}.
+ *
+ * Events are read from the JSON token stream without binding them to {@link Event} objects. Conditions are evaluated
+ * on the characters of each value as the parser reaches it, and once an event fails a condition the rest of it is
+ * skipped. Only the projected fields of matching events are turned into objects. Projected fields that come before a
+ * failing condition in the JSON may already have been read.
+ *
+ * Fields are named by their path in the event JSON, with nested fields separated by dots: <code>id</code>,
+ * <code>type</code>, <code>activation_time</code>, <code>target.url</code>, <code>event.title</code>. Object and array
+ * values are read as {@link Map} and {@link List}.
+ *
+ * <pre>
+ *     EventProjection projection = new EventProjection.Builder()
+ *             .fields("id", "type", "activation_time", "event.title")
+ *             .where("type", EventProjection.equalTo("alert", "error"))
+ *             .where("event.status", EventProjection.startsWith("FAIL"))
+ *             .build();
+ *     for(ProjectedEvent event : eventApi.query(query, projection)){
+ *         System.out.println(event.getId() + " " + event.getString("event.title"));
+ *     }
+ * </pre>
+ */
+public class EventProjection {
+    private static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
+
+    private final List<String> fields;
+    private final Map<String, Integer> fieldIndex;
+    private final Node root;
+    private final long allPredicates;
+
+    private EventProjection(Builder builder) {
+        this.fields = Collections.unmodifiableList(new ArrayList<String>(builder.fields));
+        this.fieldIndex = new HashMap<String, Integer>();
+        this.root = new Node();
+        for(int i = 0; i < fields.size(); i++){
+            fieldIndex.put(fields.get(i), i);
+            root.child(fields.get(i)).field = i;
+        }
+        for(int i = 0; i < builder.predicatePaths.size(); i++){
+            root.child(builder.predicatePaths.get(i)).addPredicate(builder.predicates.get(i), 1L << i);
+        }
+        this.allPredicates = builder.predicates.size() == 64 ? -1L : (1L << builder.predicates.size()) - 1;
+    }
+
+    /**
+     * Projected field paths, in the order given to the builder
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Reads a JSON array of events, keeping the events that match all conditions
+     *
+     * @param parser positioned before or at the start of the array
+     */
+    public List<ProjectedEvent> readEvents(@Nonnull JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken() != null ? parser.getCurrentToken() : parser.nextToken();
+        if(token != JsonToken.START_ARRAY){
+            throw new IOException("Expected JSON array of events, found "+token);
+        }
+        List<ProjectedEvent> events = new ArrayList<ProjectedEvent>();
+        Reader reader = new Reader(parser);
+        while(parser.nextToken() == JsonToken.START_OBJECT){
+            ProjectedEvent event = reader.readEvent();
+            if(event != null){
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    int indexOf(String path) {
+        Integer index = fieldIndex.get(path);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Condition on a scalar value, evaluated on the characters of the value in the JSON. For an array, the condition
+     * holds if it holds for one of the scalar elements.
+     */
+    public interface ValuePredicate {
+        /**
+         * @param token {@link JsonToken#VALUE_STRING}, {@link JsonToken#VALUE_NUMBER_INT},
+         *              {@link JsonToken#VALUE_NUMBER_FLOAT}, {@link JsonToken#VALUE_TRUE} or
+         *              {@link JsonToken#VALUE_FALSE}
+         * @param text buffer holding the value as written in the JSON, strings without quotes and unescaped. Only
+         *             valid during the call.
+         */
+        boolean apply(JsonToken token, char[] text, int offset, int length);
+    }
+
+    /**
+     * Value equal to one of the given values, numbers and booleans are compared as written in the JSON
+     */
+    public static ValuePredicate equalTo(@Nonnull String... values) {
+        final char[][] candidates = new char[values.length][];
+        for(int i = 0; i < values.length; i++){
+            candidates[i] = values[i].toCharArray();
+        }
+        return new ValuePredicate() {
+            @Override
+            public boolean apply(JsonToken token, char[] text, int offset, int length) {
+                for(char[] candidate : candidates){
+                    if(regionMatches(candidate, text, offset, length)){
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * String value starting with the given prefix
+     */
+    public static ValuePredicate startsWith(@Nonnull String prefix) {
+        final char[] chars = prefix.toCharArray();
+        return new ValuePredicate() {
+            @Override
+            public boolean apply(JsonToken token, char[] text, int offset, int length) {
+                return token == JsonToken.VALUE_STRING && length >= chars.length
+                        && regionMatches(chars, text, offset, chars.length);
+            }
+        };
+    }
+
+    /**
+     * Integer value between min and max, inclusive
+     */
+    public static ValuePredicate between(final long min, final long max) {
+        return new ValuePredicate() {
+            @Override
+            public boolean apply(JsonToken token, char[] text, int offset, int length) {
+                if(token != JsonToken.VALUE_NUMBER_INT || length == 0 || length > 18){
+                    return false;
+                }
+                boolean negative = text[offset] == '-';
+                long value = 0;
+                for(int i = negative ? offset + 1 : offset; i < offset + length; i++){
+                    value = value * 10 + (text[i] - '0');
+                }
+                value = negative ? -value : value;
+                return value >= min && value <= max;
+            }
+        };
+    }
+
+    private static boolean regionMatches(char[] expected, char[] text, int offset, int length) {
+        if(length != expected.length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(text[offset + i] != expected[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Trie of the projected and tested paths
+     */
+    private static class Node {
+        private Map<String, Node> children;
+        private int field = -1;
+        private ValuePredicate[] predicates = new ValuePredicate[0];
+        private long[] bits = new long[0];
+        private long predicateBits;
+
+        void addPredicate(ValuePredicate predicate, long bit) {
+            predicates = Arrays.copyOf(predicates, predicates.length + 1);
+            predicates[predicates.length - 1] = predicate;
+            bits = Arrays.copyOf(bits, bits.length + 1);
+            bits[bits.length - 1] = bit;
+            predicateBits |= bit;
+        }
+
+        Node child(String path) {
+            Node node = this;
+            for(String name : path.split("\\.")){
+                if(node.children == null){
+                    node.children = new HashMap<String, Node>();
+                }
+                Node child = node.children.get(name);
+                if(child == null){
+                    child = new Node();
+                    node.children.put(name, child);
+                }
+                node = child;
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Reads the events of one response, not thread safe
+     */
+    private class Reader {
+        private final JsonParser parser;
+        private Object[] values;
+        private long matched;
+        private boolean rejected;
+
+        Reader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        /**
+         * @return the event the parser is at, null if it doesn't match the conditions
+         */
+        ProjectedEvent readEvent() throws IOException {
+            values = null;
+            matched = 0;
+            rejected = false;
+            readObject(root);
+            if(rejected || matched != allPredicates){
+                return null;
+            }
+            return new ProjectedEvent(EventProjection.this, values != null ? values : new Object[fields.size()]);
+        }
+
+        /**
+         * Reads the fields of the object the parser is at, up to its end
+         */
+        private void readObject(Node node) throws IOException {
+            while(parser.nextToken() == JsonToken.FIELD_NAME){
+                Node child = rejected || node.children == null ? null : node.children.get(parser.getCurrentName());
+                JsonToken token = parser.nextToken();
+                if(child == null){
+                    parser.skipChildren();
+                }else if(child.children != null){
+                    if(token == JsonToken.START_OBJECT){
+                        readObject(child);
+                    }else{
+                        parser.skipChildren();
+                    }
+                }else{
+                    readValue(child, token);
+                }
+            }
+        }
+
+        private void readValue(Node node, JsonToken token) throws IOException {
+            if(node.predicates.length == 0){
+                if(node.field >= 0){
+                    set(node.field, materialize(token));
+                }else{
+                    parser.skipChildren();
+                }
+                return;
+            }
+            if(token.isScalarValue()){
+                test(node, token);
+                decide(node);
+                if(node.field >= 0 && !rejected){
+                    set(node.field, materialize(token));
+                }
+                return;
+            }
+            if(token == JsonToken.START_ARRAY && node.field < 0){
+                while((token = parser.nextToken()) != JsonToken.END_ARRAY){
+                    if(token.isScalarValue()){
+                        test(node, token);
+                    }else{
+                        parser.skipChildren();
+                    }
+                }
+            }else if(node.field >= 0){
+                Object value = materialize(token);
+                set(node.field, value);
+                if(value instanceof List){
+                    for(Object element : (List<?>) value){
+                        test(node, element);
+                    }
+                }
+            }else{
+                parser.skipChildren();
+            }
+            decide(node);
+        }
+
+        /**
+         * Conditions on a path are decided once its value has been read
+         */
+        private void decide(Node node) {
+            if((matched & node.predicateBits) != node.predicateBits){
+                rejected = true;
+            }
+        }
+
+        private void test(Node node, JsonToken token) throws IOException {
+            if(token == JsonToken.VALUE_NULL){
+                return;
+            }
+            for(int i = 0; i < node.predicates.length; i++){
+                if(node.predicates[i].apply(token,
+                        parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())){
+                    matched |= node.bits[i];
+                }
+            }
+        }
+
+        private void test(Node node, Object value) {
+            JsonToken token;
+            if(value instanceof String){
+                token = JsonToken.VALUE_STRING;
+            }else if(value instanceof Long || value instanceof Integer || value instanceof BigInteger){
+                token = JsonToken.VALUE_NUMBER_INT;
+            }else if(value instanceof Number){
+                token = JsonToken.VALUE_NUMBER_FLOAT;
+            }else if(value instanceof Boolean){
+                token = (Boolean) value ? JsonToken.VALUE_TRUE : JsonToken.VALUE_FALSE;
+            }else{
+                return;
+            }
+            char[] text = value.toString().toCharArray();
+            for(int i = 0; i < node.predicates.length; i++){
+                if(node.predicates[i].apply(token, text, 0, text.length)){
+                    matched |= node.bits[i];
+                }
+            }
+        }
+
+        private Object materialize(JsonToken token) throws IOException {
+            switch (token){
+                case VALUE_STRING:
+                    return parser.getText();
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    return parser.getNumberValue();
+                case VALUE_TRUE:
+                    return Boolean.TRUE;
+                case VALUE_FALSE:
+                    return Boolean.FALSE;
+                case VALUE_NULL:
+                    return null;
+                default:
+                    return parser.getCodec() != null
+                            ? parser.readValueAs(Object.class)
+                            : DEFAULT_MAPPER.readValue(parser, Object.class);
+            }
+        }
+
+        private void set(int field, Object value) {
+            if(values == null){
+                values = new Object[fields.size()];
+            }
+            values[field] = value;
+        }
+    }
+
+    public static class Builder {
+        private final Set<String> fields = new LinkedHashSet<String>();
+        private final List<String> predicatePaths = new ArrayList<String>();
+        private final List<ValuePredicate> predicates = new ArrayList<ValuePredicate>();
+
+        /**
+         * Fields to read from the matching events, by path such as <code>event.title</code>
+         */
+        public Builder fields(@Nonnull String... paths){
+            this.fields.addAll(Arrays.asList(paths));
+            return this;
+        }
+
+        /**
+         * Keeps the events whose value at the given path matches the predicate. Events without a value at that path
+         * are dropped, all conditions must hold.
+         */
+        public Builder where(@Nonnull String path, @Nonnull ValuePredicate predicate){
+            this.predicatePaths.add(path);
+            this.predicates.add(predicate);
+            return this;
+        }
+
+        public EventProjection build() throws EventApiException {
+            if(predicates.size() > 64){
+                throw new EventApiException("At most 64 conditions are supported, got "+predicates.size());
+            }
+            Set<String> paths = new HashSet<String>(fields);
+            paths.addAll(predicatePaths);
+            for(String path : paths){
+                if(path.isEmpty() || path.startsWith(".") || path.endsWith(".") || path.contains("..")){
+                    throw new EventApiException("Invalid field path: "+path);
+                }
+                for(String other : paths){
+                    if(other.startsWith(path + ".")){
+                        throw new EventApiException("Field path "+other+" is nested in "+path
+                                +", project or test only one of them");
+                    }
+                }
+            }
+            return new EventProjection(this);
+        }
+    }
+}
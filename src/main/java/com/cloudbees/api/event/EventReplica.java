@@ -0,0 +1,612 @@
+package com.cloudbees.api.event;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local copy of the events matching a query, for running queries without contacting the Event API.
+ *
+ * Events are appended as JSON lines to a file in the replica directory. On open the file is scanned to build in-memory
+ * indexes by account, service, resource, cloud resource, cloud resource type, type and activation time, pointing at
+ * each event's position in the file; events are read back from the file when a query returns them. The cloud resource
+ * is the event's source as returned by the Event API, or its target for events without a source. Account, service and
+ * resource are taken from Services Platform cloud resource URLs.
+ *
+ * {@link #sync()} fetches the events activated since the high-water mark, the activation time of the newest event
+ * replicated, and appends those not replicated yet. The high-water mark is persisted with the events so that a
+ * replica opened again resumes where it left off. Events published after a sync with an activation time before the
+ * high-water mark aren't replicated, and events deleted from the Event API after they were replicated stay in the
+ * replica.
+ *
+ * <pre>
+ *     QueryEventObject slice = new QueryEventObject.QueryBuilder(eventApi.eventApiUrl)
+ *             .account("acme")
+ *             .service("cb-app")
+ *             .build();
+ *     EventReplica replica = new EventReplica.Builder(eventApi, new File("/var/lib/analytics/acme"), slice).build();
+ *     replica.sync();
+ *
+ *     List&lt;Event&gt; alerts = replica.query(new QueryEventObject.QueryBuilder(eventApi.eventApiUrl)
+ *             .service("cb-app")
+ *             .types("alert")
+ *             .from(yesterday)
+ *             .build());
+ *     ...
+ *     replica.close();
+ * </pre>
+ */
+public class EventReplica implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EventReplica.class);
+
+    private static final String DATA_FILE = "events.ndjson";
+    private static final String STATE_FILE = "replica.properties";
+    private static final String LOCK_FILE = "lock";
+
+    /**
+     * Path of a Services Platform resource or subscription target URL
+     */
+    private static final Pattern SP_TARGET =
+            Pattern.compile(".*/api/services/(?:resources|subscriptions)/([^/]+)(?:/([^/]+))?(?:/([^/]+))?/?");
+
+    private static final Comparator<Entry> BY_TIME = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            if(e1.activationMillis != e2.activationMillis){
+                return e1.activationMillis < e2.activationMillis ? -1 : 1;
+            }
+            return e1.seq < e2.seq ? -1 : (e1.seq == e2.seq ? 0 : 1);
+        }
+    };
+
+    private static final NavigableSet<Entry> NONE = new TreeSet<Entry>(BY_TIME);
+
+    private final EventApi eventApi;
+    private final QueryEventObject slice;
+    private final int pageSize;
+    private final File directory;
+    private final ObjectMapper mapper = JacksonConfigurator.configure(new ObjectMapper());
+
+    private final RandomAccessFile lockFile;
+    private final FileLock fileLock;
+    private final RandomAccessFile data;
+
+    /**
+     * Guards the indexes
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> byId = new HashMap<String, Entry>();
+    private final NavigableSet<Entry> byTime = new TreeSet<Entry>(BY_TIME);
+    private final Map<String, NavigableSet<Entry>> byAccount = new HashMap<String, NavigableSet<Entry>>();
+    private final Map<String, NavigableSet<Entry>> byService = new HashMap<String, NavigableSet<Entry>>();
+    private final Map<String, NavigableSet<Entry>> byResource = new HashMap<String, NavigableSet<Entry>>();
+    private final Map<String, NavigableSet<Entry>> byCloudResource = new HashMap<String, NavigableSet<Entry>>();
+    private final Map<String, NavigableSet<Entry>> byCloudResourceType = new HashMap<String, NavigableSet<Entry>>();
+    private final Map<String, NavigableSet<Entry>> byType = new HashMap<String, NavigableSet<Entry>>();
+    private long seq;
+
+    /**
+     * Serializes syncs and guards the high-water mark
+     */
+    private final Object syncLock = new Object();
+    private long highWaterMark;
+    private final Set<String> idsAtHighWaterMark = new HashSet<String>();
+
+    private EventReplica(Builder builder) throws IOException, EventApiException {
+        this.eventApi = builder.eventApi;
+        this.slice = builder.slice;
+        this.pageSize = slice.getLimit() > 0 ? slice.getLimit() : EventApi.DEFAULT_PAGE_SIZE;
+        this.directory = builder.directory;
+
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new EventApiException("Failed to create replica directory "+directory);
+        }
+        this.lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        FileLock fileLock;
+        try {
+            fileLock = lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if(fileLock == null){
+            lockFile.close();
+            throw new EventApiException("Replica directory "+directory+" is used by another EventReplica");
+        }
+        this.fileLock = fileLock;
+        RandomAccessFile data = null;
+        try {
+            data = new RandomAccessFile(new File(directory, DATA_FILE), "rw");
+            this.data = data;
+            loadState();
+            load();
+        } catch (IOException e) {
+            if(data != null){
+                data.close();
+            }
+            fileLock.release();
+            lockFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches the events activated since the high-water mark and appends those not replicated yet
+     *
+     * @return number of events added
+     */
+    public int sync() throws EventApiException {
+        synchronized (syncLock){
+            // Whether the Event API treats from as inclusive isn't specified, ask for a bit more and filter
+            QueryEventObject query = new QueryEventObject.QueryBuilder(slice)
+                    .from(new Date(highWaterMark - 1))
+                    .offset(0)
+                    .build();
+            List<Event> events = new ArrayList<Event>();
+            EventIterator it = new EventIterator(eventApi, query, pageSize);
+            try {
+                while(it.hasNext()){
+                    events.add(it.next());
+                }
+            } catch (RuntimeException e) {
+                if(e.getCause() instanceof EventApiException){
+                    throw (EventApiException) e.getCause();
+                }
+                throw e;
+            } finally {
+                it.close();
+            }
+            Collections.sort(events, ParallelEventQuery.BY_ACTIVATION_TIME);
+
+            try {
+                int added = append(events);
+                saveState();
+                return added;
+            } catch (IOException e) {
+                throw new EventApiException("Failed to write replica in "+directory+": "+e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Runs a query against the replicated events. All parameters of {@link QueryEventObject} are supported, events
+     * are returned oldest first.
+     */
+    public List<Event> query(@Nonnull QueryEventObject query) throws EventApiException {
+        List<Entry> entries = new ArrayList<Entry>();
+        lock.readLock().lock();
+        try {
+            Set<String> types = query.getTypes() != null ? new HashSet<String>(Arrays.asList(query.getTypes())) : null;
+            Entry from = new Entry(query.getFrom() != null ? query.getFrom().getTime() : Long.MIN_VALUE, Long.MIN_VALUE);
+            Entry to = new Entry(query.getTo() != null ? query.getTo().getTime() : Long.MAX_VALUE, Long.MIN_VALUE);
+            int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+            int skipped = 0;
+            for(Entry entry : candidates(query, types).subSet(from, true, to, false)){
+                if(entries.size() >= limit){
+                    break;
+                }
+                if(!matches(entry, query, types)){
+                    continue;
+                }
+                if(skipped < query.getOffset()){
+                    skipped++;
+                    continue;
+                }
+                entries.add(entry);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Event> events = new ArrayList<Event>(entries.size());
+        try {
+            for(Entry entry : entries){
+                events.add(read(entry));
+            }
+        } catch (IOException e) {
+            throw new EventApiException("Failed to read replica in "+directory+": "+e.getMessage(), e);
+        }
+        return events;
+    }
+
+    /**
+     * Activation time of the newest replicated event, or where the next sync starts
+     */
+    public Date getHighWaterMark() {
+        synchronized (syncLock){
+            return new Date(highWaterMark);
+        }
+    }
+
+    /**
+     * Number of replicated events
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the data file and releases the replica directory
+     */
+    @Override
+    public void close() {
+        synchronized (syncLock){
+            try {
+                data.close();
+                fileLock.release();
+                lockFile.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close replica in "+directory+": "+e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends the events after the high-water mark that aren't replicated yet, then moves the high-water mark
+     */
+    private int append(List<Event> events) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        List<Entry> entries = new ArrayList<Entry>();
+        long position = data.length();
+        // Only moved once the events are on disk, so that a failed write is retried by the next sync
+        long mark = highWaterMark;
+        Set<String> idsAtMark = new HashSet<String>(idsAtHighWaterMark);
+        lock.readLock().lock();
+        try {
+            for(Event event : events){
+                long time = activationMillis(event);
+                if(time < mark || event.getId() == null || byId.containsKey(event.getId())
+                        || (time == mark && idsAtMark.contains(event.getId()))){
+                    continue;
+                }
+                byte[] json = mapper.writeValueAsBytes(event);
+                entries.add(new Entry(event, position + lines.size(), json.length));
+                lines.write(json);
+                lines.write('\n');
+                if(time > mark){
+                    mark = time;
+                    idsAtMark.clear();
+                }
+                idsAtMark.add(event.getId());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if(entries.isEmpty()){
+            return 0;
+        }
+
+        try {
+            data.seek(position);
+            data.write(lines.toByteArray());
+            data.getChannel().force(false);
+        } catch (IOException e) {
+            // Drops a partly written line, which load() could only skip at the end of the file
+            try {
+                data.setLength(position);
+            } catch (IOException t) {
+                logger.warn("Failed to truncate "+new File(directory, DATA_FILE)+": "+t.getMessage());
+            }
+            throw e;
+        }
+        highWaterMark = mark;
+        idsAtHighWaterMark.clear();
+        idsAtHighWaterMark.addAll(idsAtMark);
+        lock.writeLock().lock();
+        try {
+            for(Entry entry : entries){
+                entry.seq = ++seq;
+                index(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return entries.size();
+    }
+
+    /**
+     * Indexes the events in the data file. A line cut short by a crash is truncated, events appended twice because
+     * of a crash before the state was saved are skipped.
+     */
+    private void load() throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(new File(directory, DATA_FILE)));
+        long position = 0;
+        long lineStart = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try {
+            int b;
+            while((b = in.read()) >= 0){
+                position++;
+                if(b != '\n'){
+                    line.write(b);
+                    continue;
+                }
+                byte[] json = line.toByteArray();
+                line.reset();
+                Event event = mapper.readValue(json, 0, json.length, Event.class);
+                if(event.getId() != null && !byId.containsKey(event.getId())){
+                    Entry entry = new Entry(event, lineStart, json.length);
+                    entry.seq = ++seq;
+                    index(entry);
+                    long time = activationMillis(event);
+                    if(time > highWaterMark){
+                        highWaterMark = time;
+                        idsAtHighWaterMark.clear();
+                    }
+                    if(time == highWaterMark){
+                        idsAtHighWaterMark.add(event.getId());
+                    }
+                }
+                lineStart = position;
+            }
+        } finally {
+            in.close();
+        }
+        if(lineStart < data.length()){
+            logger.warn("Truncating incomplete event at the end of "+new File(directory, DATA_FILE));
+            data.setLength(lineStart);
+        }
+    }
+
+    private void loadState() throws IOException {
+        highWaterMark = slice.getFrom() != null ? slice.getFrom().getTime() : 0;
+        File file = new File(directory, STATE_FILE);
+        if(!file.exists()){
+            return;
+        }
+        Properties state = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            state.load(in);
+        } finally {
+            in.close();
+        }
+        highWaterMark = Math.max(highWaterMark, Long.parseLong(state.getProperty("highWaterMark", "0")));
+        for(String id : Splitter.on(',').omitEmptyStrings().split(state.getProperty("idsAtHighWaterMark", ""))){
+            idsAtHighWaterMark.add(id);
+        }
+    }
+
+    /**
+     * Writes the high-water mark to a temporary file renamed over the previous state
+     */
+    private void saveState() throws IOException {
+        Properties state = new Properties();
+        state.setProperty("highWaterMark", String.valueOf(highWaterMark));
+        state.setProperty("idsAtHighWaterMark", Joiner.on(',').join(idsAtHighWaterMark));
+        File tmp = new File(directory, STATE_FILE + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            state.store(out, "EventReplica state");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        File file = new File(directory, STATE_FILE);
+        if(!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))){
+            throw new IOException("Failed to rename "+tmp+" to "+file);
+        }
+    }
+
+    private Event read(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        while(buffer.hasRemaining()){
+            if(data.getChannel().read(buffer, entry.offset + buffer.position()) < 0){
+                throw new IOException("Unexpected end of "+DATA_FILE);
+            }
+        }
+        return mapper.readValue(buffer.array(), 0, entry.length, Event.class);
+    }
+
+    private void index(Entry entry) {
+        byId.put(entry.id, entry);
+        byTime.add(entry);
+        index(byAccount, entry.account, entry);
+        index(byService, entry.service, entry);
+        index(byResource, entry.resource, entry);
+        index(byCloudResource, entry.cloudResource, entry);
+        for(String type : entry.cloudResourceTypes){
+            index(byCloudResourceType, type, entry);
+        }
+        index(byType, entry.type, entry);
+    }
+
+    private static void index(Map<String, NavigableSet<Entry>> index, String key, Entry entry) {
+        if(key == null){
+            return;
+        }
+        NavigableSet<Entry> entries = index.get(key);
+        if(entries == null){
+            entries = new TreeSet<Entry>(BY_TIME);
+            index.put(key, entries);
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * Smallest index containing all events matching the query
+     */
+    private NavigableSet<Entry> candidates(QueryEventObject query, Set<String> types) {
+        List<NavigableSet<Entry>> indexes = new ArrayList<NavigableSet<Entry>>();
+        if(query.getCloudResource() != null){
+            indexes.add(lookup(byCloudResource, query.getCloudResource()));
+        }else{
+            if(query.getAccount() != null){
+                indexes.add(lookup(byAccount, query.getAccount()));
+            }
+            if(query.getService() != null){
+                indexes.add(lookup(byService, query.getService()));
+            }
+            if(query.getResource() != null){
+                indexes.add(lookup(byResource, query.getResource()));
+            }
+        }
+        if(query.getCloudResourceType() != null){
+            indexes.add(lookup(byCloudResourceType, query.getCloudResourceType()));
+        }
+        if(types != null && types.size() == 1){
+            indexes.add(lookup(byType, types.iterator().next()));
+        }
+        NavigableSet<Entry> smallest = byTime;
+        for(NavigableSet<Entry> index : indexes){
+            if(index.size() < smallest.size()){
+                smallest = index;
+            }
+        }
+        return smallest;
+    }
+
+    private static NavigableSet<Entry> lookup(Map<String, NavigableSet<Entry>> index, String key) {
+        NavigableSet<Entry> entries = index.get(key);
+        return entries != null ? entries : NONE;
+    }
+
+    /**
+     * Whether the event matches all parameters of the query but from, to, limit and offset
+     */
+    private static boolean matches(Entry entry, QueryEventObject query, Set<String> types) {
+        if(query.getCloudResource() != null){
+            // service, resource and account are ignored with cloud_resource
+            if(!query.getCloudResource().equals(entry.cloudResource)){
+                return false;
+            }
+        }else{
+            if(query.getAccount() != null && !query.getAccount().equals(entry.account)){
+                return false;
+            }
+            if(query.getService() != null && !query.getService().equals(entry.service)){
+                return false;
+            }
+            if(query.getResource() != null && !query.getResource().equals(entry.resource)){
+                return false;
+            }
+        }
+        if(query.getCloudResourceType() != null && !entry.cloudResourceTypes.contains(query.getCloudResourceType())){
+            return false;
+        }
+        return types == null || types.contains(entry.type);
+    }
+
+    private static long activationMillis(Event event) {
+        return event.getActivationTime() != null ? Event.toMillis(event.getActivationTime()) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Indexed attributes and position in the data file of a replicated event
+     */
+    private static class Entry {
+        private final String id;
+        private final long activationMillis;
+        private final long offset;
+        private final int length;
+        private final String type;
+        private final String cloudResource;
+        private final List<String> cloudResourceTypes;
+        private final String service;
+        private final String account;
+        private final String resource;
+        private long seq;
+
+        private Entry(Event event, long offset, int length) {
+            this.id = event.getId();
+            this.activationMillis = activationMillis(event);
+            this.offset = offset;
+            this.length = length;
+            this.type = event.getType();
+            // Events read from the Event API carry their cloud resource as source, locally built ones as target
+            Event.Target target = event.getSource() != null ? event.getSource() : event.getTarget();
+            this.cloudResource = target != null && target.getUrl() != null ? target.getUrl().toString() : null;
+            this.cloudResourceTypes = target != null && target.getTypes() != null
+                    ? target.getTypes()
+                    : Collections.<String>emptyList();
+            Matcher m = cloudResource != null ? SP_TARGET.matcher(cloudResource) : null;
+            boolean sp = m != null && m.matches();
+            this.service = sp ? m.group(1) : null;
+            this.account = sp ? m.group(2) : null;
+            this.resource = sp ? m.group(3) : null;
+        }
+
+        /**
+         * Bound for range lookups
+         */
+        private Entry(long activationMillis, long seq) {
+            this.id = null;
+            this.activationMillis = activationMillis;
+            this.offset = 0;
+            this.length = 0;
+            this.type = null;
+            this.cloudResource = null;
+            this.cloudResourceTypes = Collections.emptyList();
+            this.service = null;
+            this.account = null;
+            this.resource = null;
+            this.seq = seq;
+        }
+    }
+
+    public static class Builder {
+        private final EventApi eventApi;
+        private final File directory;
+        private final QueryEventObject slice;
+
+        /**
+         * @param eventApi EventApi used to sync
+         * @param directory directory holding the replica, created if needed
+         * @param slice query selecting the events to replicate, its limit is used as page size and its offset is
+         *              ignored. Replication starts at its from time, or with the oldest event if it has none.
+         */
+        public Builder(@Nonnull EventApi eventApi, @Nonnull File directory, @Nonnull QueryEventObject slice) {
+            this.eventApi = eventApi;
+            this.directory = directory;
+            this.slice = slice;
+        }
+
+        /**
+         * Opens the replica, loading the events replicated by a previous replica on the same directory
+         */
+        public EventReplica build() throws EventApiException {
+            try {
+                return new EventReplica(this);
+            } catch (IOException e) {
+                throw new EventApiException("Failed to open replica in "+directory+": "+e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.cloudbees.api.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the Event API for new events on behalf of any number of {@link EventSubscription}s.
+ *
+ * All subscriptions share a single scheduler thread and send their queries through a non-blocking
+ * {@link AsyncEventApi}, so waiting for responses doesn't hold a thread per subscription. First polls are spread over
+ * the minimum interval to avoid bursts when many subscriptions start together.
+ *
+ * <pre>
+ *     EventSubscriber subscriber = new EventSubscriber.Builder(asyncEventApi)
+ *             .pollInterval(1, 60, TimeUnit.SECONDS)
+ *             .build();
+ *
+ *     QueryEventObject qeo = new QueryEventObject.QueryBuilder(asyncEventApi.eventApiUrl)
+ *             .cloudResource("https://services-platform.cloudbees.com/api/services/resources/cb-app/acme/helloworld")
+ *             .build();
+ *
+ *     EventSubscription subscription = subscriber.subscribe(qeo, listener);
+ *     ...
+ *     subscriber.close();
+ * </pre>
+ */
+public class EventSubscriber implements Closeable {
+    final AsyncEventApi eventApi;
+    final ScheduledExecutorService scheduler;
+    final Executor listenerExecutor;
+    final long minIntervalMillis;
+    final long maxIntervalMillis;
+
+    private final Set<EventSubscription> subscriptions =
+            Collections.newSetFromMap(new ConcurrentHashMap<EventSubscription, Boolean>());
+    private final Random random = new Random();
+    private volatile boolean closed;
+
+    private EventSubscriber(Builder builder) {
+        this.eventApi = builder.eventApi;
+        this.minIntervalMillis = builder.minIntervalMillis;
+        this.maxIntervalMillis = builder.maxIntervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-subscriber-%d").build());
+        this.listenerExecutor = builder.listenerExecutor != null ? builder.listenerExecutor : scheduler;
+    }
+
+    /**
+     * Starts tailing the events matching the query, beginning at its from time or, if it has none, now
+     *
+     * @param query query template, its limit is used as page size and its to and offset are ignored
+     */
+    public EventSubscription subscribe(@Nonnull QueryEventObject query, @Nonnull EventSubscription.Listener listener)
+            throws EventApiException {
+        if(closed){
+            throw new EventApiException("EventSubscriber is closed");
+        }
+        QueryEventObject template = new QueryEventObject.QueryBuilder(query).to(null).offset(0).build();
+        Date from = query.getFrom() != null ? query.getFrom() : new Date();
+        EventSubscription subscription = new EventSubscription(this, template, listener, from.getTime());
+        subscriptions.add(subscription);
+        long jitter;
+        synchronized (random){
+            jitter = (long) (random.nextDouble() * minIntervalMillis);
+        }
+        subscription.schedule(jitter);
+        return subscription;
+    }
+
+    /**
+     * Active subscriptions
+     */
+    public List<EventSubscription> getSubscriptions() {
+        return new ArrayList<EventSubscription>(subscriptions);
+    }
+
+    void remove(EventSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Cancels all subscriptions and stops the scheduler thread. The AsyncEventApi is left open.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for(EventSubscription subscription : getSubscriptions()){
+            subscription.cancel();
+        }
+        scheduler.shutdownNow();
+    }
+
+    public static class Builder {
+        private final AsyncEventApi eventApi;
+        private long minIntervalMillis = 1000;
+        private long maxIntervalMillis = 60000;
+        private Executor listenerExecutor;
+
+        /**
+         * @param eventApi AsyncEventApi used to poll
+         */
+        public Builder(@Nonnull AsyncEventApi eventApi) {
+            this.eventApi = eventApi;
+        }
+
+        /**
+         * Polling interval of a subscription after it received events, and the interval it backs off to while
+         * idle. Defaults to 1 and 60 seconds.
+         */
+        public Builder pollInterval(long min, long max, @Nonnull TimeUnit unit){
+            this.minIntervalMillis = unit.toMillis(min);
+            this.maxIntervalMillis = unit.toMillis(max);
+            return this;
+        }
+
+        /**
+         * Executor calling the listeners. Defaults to the scheduler thread, in which case listeners must return
+         * quickly since they hold up the polls of all subscriptions.
+         */
+        public Builder listenerExecutor(@Nonnull Executor listenerExecutor){
+            this.listenerExecutor = listenerExecutor;
+            return this;
+        }
+
+        public EventSubscriber build() throws EventApiException {
+            if(minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis){
+                throw new EventApiException("pollInterval must be positive with max not less than min");
+            }
+            return new EventSubscriber(this);
+        }
+    }
+}
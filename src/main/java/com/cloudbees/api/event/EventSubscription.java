@@ -0,0 +1,243 @@
+package com.cloudbees.api.event;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails the events matching a query, created by {@link EventSubscriber#subscribe(QueryEventObject, Listener)}.
+ *
+ * The subscription keeps a high-water mark, the activation time of the newest event delivered and the ids of the
+ * events delivered at that time. Each poll only asks for events from the high-water mark on and delivers those not
+ * seen yet, oldest first. The polling interval drops to the minimum whenever new events arrive and doubles after each
+ * poll that finds none, up to the maximum.
+ */
+public class EventSubscription {
+    private static final Logger logger = LoggerFactory.getLogger(EventSubscription.class);
+
+    private static final Comparator<Event> BY_ACTIVATION_TIME = new Comparator<Event>() {
+        @Override
+        public int compare(Event e1, Event e2) {
+            long t1 = activationMillis(e1);
+            long t2 = activationMillis(e2);
+            return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+        }
+    };
+
+    /**
+     * Receives the events of a subscription. Calls for one subscription never overlap.
+     */
+    public interface Listener {
+        /**
+         * New events, ordered by activation time
+         */
+        void onEvents(@Nonnull EventSubscription subscription, @Nonnull List<Event> events);
+
+        /**
+         * A poll failed, it is retried after the backed off polling interval
+         */
+        void onError(@Nonnull EventSubscription subscription, @Nonnull EventApiException error);
+    }
+
+    private final EventSubscriber subscriber;
+    private final QueryEventObject template;
+    private final Listener listener;
+    private final int pageSize;
+
+    // Only accessed by the poll in progress, polls of one subscription run one after the other
+    private long highWaterMark;
+    private final Set<String> idsAtHighWaterMark = new HashSet<String>();
+    private long intervalMillis;
+
+    private volatile boolean cancelled;
+    private volatile ScheduledFuture<?> scheduled;
+    private volatile ListenableFuture<List<Event>> inFlight;
+
+    EventSubscription(EventSubscriber subscriber, QueryEventObject template, Listener listener, long startMillis) {
+        this.subscriber = subscriber;
+        this.template = template;
+        this.listener = listener;
+        this.pageSize = template.getLimit() > 0 ? template.getLimit() : EventApi.DEFAULT_PAGE_SIZE;
+        this.highWaterMark = startMillis;
+        this.intervalMillis = subscriber.minIntervalMillis;
+    }
+
+    public QueryEventObject getQuery() {
+        return template;
+    }
+
+    /**
+     * Activation time of the newest event delivered, or the time the subscription started from
+     */
+    public synchronized Date getHighWaterMark() {
+        return new Date(highWaterMark);
+    }
+
+    /**
+     * Stops polling. A poll in progress is aborted, the listener isn't called anymore.
+     */
+    public void cancel() {
+        cancelled = true;
+        ScheduledFuture<?> scheduled = this.scheduled;
+        if(scheduled != null){
+            scheduled.cancel(false);
+        }
+        ListenableFuture<List<Event>> inFlight = this.inFlight;
+        if(inFlight != null){
+            inFlight.cancel(true);
+        }
+        subscriber.remove(this);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void schedule(long delayMillis) {
+        if(cancelled){
+            return;
+        }
+        scheduled = subscriber.scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                poll(new ArrayList<Event>(), 0);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches the page at the given offset, then the following ones as long as pages are full
+     */
+    private void poll(final List<Event> fetched, final int offset) {
+        if(cancelled){
+            return;
+        }
+        final String url;
+        synchronized (this){
+            try {
+                url = new QueryEventObject.QueryBuilder(template)
+                        .from(new Date(highWaterMark))
+                        .limit(pageSize)
+                        .offset(offset)
+                        .build()
+                        .toUri();
+            } catch (EventApiException e) {
+                failed(e);
+                return;
+            }
+        }
+        ListenableFuture<List<Event>> page = subscriber.eventApi.queryAsync(url);
+        inFlight = page;
+        Futures.addCallback(page, new FutureCallback<List<Event>>() {
+            @Override
+            public void onSuccess(List<Event> events) {
+                fetched.addAll(events);
+                if(events.size() >= pageSize){
+                    poll(fetched, offset + events.size());
+                }else{
+                    completed(fetched);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if(!cancelled){
+                    failed(t instanceof EventApiException
+                            ? (EventApiException) t
+                            : new EventApiException(t.getMessage(), t));
+                }
+            }
+        }, subscriber.scheduler);
+    }
+
+    private void completed(List<Event> fetched) {
+        final List<Event> fresh = new ArrayList<Event>();
+        synchronized (this){
+            Collections.sort(fetched, BY_ACTIVATION_TIME);
+            for(Event event : fetched){
+                long time = activationMillis(event);
+                if(time < highWaterMark || (time == highWaterMark && event.getId() != null
+                        && idsAtHighWaterMark.contains(event.getId()))){
+                    continue;
+                }
+                if(time > highWaterMark){
+                    highWaterMark = time;
+                    idsAtHighWaterMark.clear();
+                }
+                if(event.getId() != null){
+                    idsAtHighWaterMark.add(event.getId());
+                }
+                fresh.add(event);
+            }
+            intervalMillis = fresh.isEmpty()
+                    ? Math.min(intervalMillis * 2, subscriber.maxIntervalMillis)
+                    : subscriber.minIntervalMillis;
+        }
+        if(!fresh.isEmpty()){
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onEvents(EventSubscription.this, fresh);
+                }
+            });
+        }else{
+            schedule(intervalMillis);
+        }
+    }
+
+    private void failed(final EventApiException error) {
+        synchronized (this){
+            intervalMillis = Math.min(intervalMillis * 2, subscriber.maxIntervalMillis);
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                listener.onError(EventSubscription.this, error);
+            }
+        });
+    }
+
+    /**
+     * Calls the listener on the listener executor and schedules the next poll once it returned, so that listener
+     * calls never overlap
+     */
+    private void deliver(final Runnable call) {
+        Executor executor = subscriber.listenerExecutor;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if(!cancelled){
+                        call.run();
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Event subscription listener failed: "+e.getMessage(), e);
+                } finally {
+                    schedule(intervalMillis());
+                }
+            }
+        });
+    }
+
+    private synchronized long intervalMillis() {
+        return intervalMillis;
+    }
+
+    private static long activationMillis(Event event) {
+        return event.getActivationTime() != null ? Event.toMillis(event.getActivationTime()) : Long.MIN_VALUE;
+    }
+}
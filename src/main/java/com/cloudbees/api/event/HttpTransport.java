@@ -0,0 +1,29 @@
+package com.cloudbees.api.event;
+
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+
+import java.io.Closeable;
+
+/**
+ * Provides the HTTP implementation used by {@link EventApi.RestClient} to talk to the Event API.
+ *
+ * {@link DefaultHttpTransport} uses {@link java.net.HttpURLConnection}, {@link PooledHttpTransport} uses a pool of
+ * Apache HttpClient connections.
+ */
+public interface HttpTransport extends Closeable {
+
+    /**
+     * Creates the terminating Jersey handler that executes the requests. Called once by the
+     * {@link EventApi.RestClient} using this transport.
+     *
+     * @param config Jersey client configuration of the RestClient
+     */
+    ClientHandler createClientHandler(ClientConfig config);
+
+    /**
+     * Releases the connections and threads held by this transport
+     */
+    @Override
+    void close();
+}
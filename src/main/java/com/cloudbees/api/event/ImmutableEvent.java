@@ -0,0 +1,337 @@
+package com.cloudbees.api.event;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable alternative to {@link Event} that is cheaper to serialize and deserialize.
+ *
+ * The predefined event data fields title, description, icon and url are typed fields, other event data goes to an
+ * extension map that is only allocated when used. URLs are kept as strings. The JSON form is the same as
+ * {@link Event}'s, written and read without reflection by {@link ImmutableEventSerializer} and
+ * {@link ImmutableEventDeserializer}, which {@link JacksonConfigurator} registers with the RestClient's ObjectMapper.
+ *
+ * <pre>
+ *     ImmutableEvent event = new ImmutableEvent.Builder(target, "info")
+ *             .title("Application helloworld deployed")
+ *             .url("https://run.cloudbees.com/a/acme")
+ *             .build();
+ *     eventApi.publish(event);
+ * </pre>
+ */
+public final class ImmutableEvent {
+    private final String id;
+    private final Target target;
+    private final Target source;
+    private final String type;
+    private final Long expiryTime;
+    private final Long activationTime;
+    private final String title;
+    private final String description;
+    private final String icon;
+    private final String url;
+    private final Map<String, Object> extraData;
+    private final String idempotencyKey;
+
+    private ImmutableEvent(Builder builder) {
+        this.id = builder.id;
+        this.target = builder.target;
+        this.source = builder.source;
+        this.type = builder.type;
+        this.expiryTime = builder.expiryTime;
+        this.activationTime = builder.activationTime;
+        this.title = builder.title;
+        this.description = builder.description;
+        this.icon = builder.icon;
+        this.url = builder.url;
+        this.extraData = builder.extraData != null ? Collections.unmodifiableMap(builder.extraData) : null;
+        this.idempotencyKey = builder.idempotencyKey;
+    }
+
+    /**
+     * Copy of a mutable event
+     */
+    public static ImmutableEvent from(@Nonnull Event event) {
+        Target target = event.getTarget() != null ? Target.from(event.getTarget()) : null;
+        Builder builder = new Builder(target, event.getType())
+                .id(event.getId())
+                .expiryTime(event.getExpiryTime())
+                .activationTime(event.getActivationTime())
+                .idempotencyKey(event.getIdempotencyKey());
+        if(event.getSource() != null){
+            builder.source(Target.from(event.getSource()));
+        }
+        if(event.getEvent() != null){
+            for(Object e : event.getEvent().entrySet()){
+                Map.Entry entry = (Map.Entry) e;
+                builder.data(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Mutable copy of this event
+     */
+    @SuppressWarnings("unchecked")
+    public Event toEvent() throws EventApiException {
+        Event event = new Event(target != null ? target.toTarget() : null, type);
+        event.setId(id);
+        event.setSource(source != null ? source.toTarget() : null);
+        event.setExpiryTime(expiryTime);
+        event.setActivationTime(activationTime);
+        event.setIdempotencyKey(idempotencyKey);
+        Map data = getEventData();
+        event.setEvent(data.isEmpty() ? null : new LinkedHashMap(data));
+        return event;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Target of a published event, null for events read from the Event API, which return it as {@link #getSource()}
+     */
+    @Nullable
+    public Target getTarget() {
+        return target;
+    }
+
+    @Nullable
+    public Target getSource() {
+        return source;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getExpiryTime() {
+        return expiryTime;
+    }
+
+    public Long getActivationTime() {
+        return activationTime;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getIcon() {
+        return icon;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * See {@link Event#getIdempotencyKey()}
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Event data other than title, description, icon and url, empty if there is none
+     */
+    public Map<String, Object> getExtraData() {
+        return extraData != null ? extraData : Collections.<String, Object>emptyMap();
+    }
+
+    /**
+     * All event data, predefined fields first. Built on each call.
+     */
+    public Map<String, Object> getEventData() {
+        Map<String, Object> data = new LinkedHashMap<String, Object>();
+        putIfNotNull(data, "title", title);
+        putIfNotNull(data, "description", description);
+        putIfNotNull(data, "icon", icon);
+        putIfNotNull(data, "url", url);
+        if(extraData != null){
+            data.putAll(extraData);
+        }
+        return data;
+    }
+
+    /**
+     * Whether the event has event data, which the Event API requires of published events
+     */
+    boolean hasEventData() {
+        return title != null || description != null || icon != null || url != null || extraData != null;
+    }
+
+    Map<String, Object> getExtraDataOrNull() {
+        return extraData;
+    }
+
+    private static void putIfNotNull(Map<String, Object> map, String key, Object value) {
+        if(value != null){
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Immutable counterpart of {@link Event.Target}
+     */
+    public static final class Target {
+        private final String url;
+        private final List<String> types;
+
+        public Target(@Nullable String url, String... types) {
+            this(url, ImmutableList.copyOf(types));
+        }
+
+        Target(String url, ImmutableList<String> types) {
+            this.url = url;
+            this.types = types;
+        }
+
+        public static Target from(@Nonnull Event.Target target) {
+            return new Target(target.getUrl() != null ? target.getUrl().toString() : null,
+                    target.getTypes() != null ? ImmutableList.copyOf(target.getTypes()) : ImmutableList.<String>of());
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public List<String> getTypes() {
+            return types;
+        }
+
+        Event.Target toTarget() throws EventApiException {
+            try {
+                return new Event.Target(url != null ? new URL(url) : null, types.toArray(new String[types.size()]));
+            } catch (MalformedURLException e) {
+                throw new EventApiException("Invalid target url: "+url, e);
+            }
+        }
+    }
+
+    public static final class Builder {
+        private String id;
+        private final Target target;
+        private Target source;
+        private final String type;
+        private Long expiryTime;
+        private Long activationTime;
+        private String title;
+        private String description;
+        private String icon;
+        private String url;
+        private Map<String, Object> extraData;
+        private String idempotencyKey;
+
+        /**
+         * @param target required to publish the event, null for events read from the Event API
+         */
+        public Builder(@Nullable Target target, @Nonnull String type) {
+            this.target = target;
+            this.type = type;
+        }
+
+        public Builder id(String id){
+            this.id = id;
+            return this;
+        }
+
+        public Builder source(Target source){
+            this.source = source;
+            return this;
+        }
+
+        public Builder expiryTime(Long expiryTime){
+            this.expiryTime = expiryTime;
+            return this;
+        }
+
+        public Builder activationTime(Long activationTime){
+            this.activationTime = activationTime;
+            return this;
+        }
+
+        /**
+         * See {@link Event#setIdempotencyKey(String)}
+         */
+        public Builder idempotencyKey(String idempotencyKey){
+            this.idempotencyKey = idempotencyKey;
+            return this;
+        }
+
+        /**
+         * Required. For example, "Application helloworld deployed"
+         */
+        public Builder title(String title){
+            this.title = title;
+            return this;
+        }
+
+        public Builder description(String description){
+            this.description = description;
+            return this;
+        }
+
+        /**
+         * URL of the icon related to this event
+         */
+        public Builder icon(String icon){
+            this.icon = icon;
+            return this;
+        }
+
+        /**
+         * URL where more details of the event can be found
+         */
+        public Builder url(String url){
+            this.url = url;
+            return this;
+        }
+
+        /**
+         * Sets an event data field, predefined fields go to their typed field
+         */
+        public Builder data(@Nonnull String key, Object value){
+            if("title".equals(key) && (value == null || value instanceof String)){
+                return title((String) value);
+            }else if("description".equals(key) && (value == null || value instanceof String)){
+                return description((String) value);
+            }else if("icon".equals(key) && (value == null || value instanceof String || value instanceof URL)){
+                return icon(value != null ? value.toString() : null);
+            }else if("url".equals(key) && (value == null || value instanceof String || value instanceof URL)){
+                return url(value != null ? value.toString() : null);
+            }
+            if(extraData == null){
+                extraData = new LinkedHashMap<String, Object>();
+            }
+            extraData.put(key, value);
+            return this;
+        }
+
+        /**
+         * Takes over a map of event data the caller no longer uses
+         */
+        Builder extraData(Map<String, Object> extraData){
+            this.extraData = extraData;
+            return this;
+        }
+
+        public ImmutableEvent build() {
+            return new ImmutableEvent(this);
+        }
+    }
+}
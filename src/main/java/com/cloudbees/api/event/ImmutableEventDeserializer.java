@@ -0,0 +1,118 @@
+package com.cloudbees.api.event;
+
+import com.google.common.collect.ImmutableList;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads an {@link ImmutableEvent} token by token. Unknown fields are skipped.
+ */
+public class ImmutableEventDeserializer extends JsonDeserializer<ImmutableEvent> {
+    @Override
+    public ImmutableEvent deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        if(jp.getCurrentToken() == JsonToken.START_OBJECT){
+            jp.nextToken();
+        }
+        String id = null;
+        String type = null;
+        ImmutableEvent.Target target = null;
+        ImmutableEvent.Target source = null;
+        Long expiryTime = null;
+        Long activationTime = null;
+        String title = null;
+        String description = null;
+        String icon = null;
+        String url = null;
+        Map<String, Object> extraData = null;
+
+        for(; jp.getCurrentToken() == JsonToken.FIELD_NAME; jp.nextToken()){
+            String name = jp.getCurrentName();
+            JsonToken value = jp.nextToken();
+            if(value == JsonToken.VALUE_NULL){
+                continue;
+            }
+            if("id".equals(name)){
+                id = jp.getText();
+            }else if("type".equals(name)){
+                type = jp.getText();
+            }else if("target".equals(name)){
+                target = readTarget(jp, ctxt);
+            }else if("source".equals(name)){
+                source = readTarget(jp, ctxt);
+            }else if("expiry_time".equals(name)){
+                expiryTime = jp.getLongValue();
+            }else if("activation_time".equals(name)){
+                activationTime = jp.getLongValue();
+            }else if("event".equals(name) && value == JsonToken.START_OBJECT){
+                while(jp.nextToken() == JsonToken.FIELD_NAME){
+                    String key = jp.getCurrentName();
+                    JsonToken token = jp.nextToken();
+                    if(token == JsonToken.VALUE_NULL){
+                        continue;
+                    }
+                    if(token == JsonToken.VALUE_STRING){
+                        if("title".equals(key)){
+                            title = jp.getText();
+                            continue;
+                        }else if("description".equals(key)){
+                            description = jp.getText();
+                            continue;
+                        }else if("icon".equals(key)){
+                            icon = jp.getText();
+                            continue;
+                        }else if("url".equals(key)){
+                            url = jp.getText();
+                            continue;
+                        }
+                    }
+                    if(extraData == null){
+                        extraData = new LinkedHashMap<String, Object>();
+                    }
+                    extraData.put(key, token == JsonToken.VALUE_STRING ? jp.getText() : jp.readValueAs(Object.class));
+                }
+            }else{
+                jp.skipChildren();
+            }
+        }
+
+        return new ImmutableEvent.Builder(target, type)
+                .id(id)
+                .source(source)
+                .expiryTime(expiryTime)
+                .activationTime(activationTime)
+                .title(title)
+                .description(description)
+                .icon(icon)
+                .url(url)
+                .extraData(extraData)
+                .build();
+    }
+
+    private static ImmutableEvent.Target readTarget(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        if(jp.getCurrentToken() != JsonToken.START_OBJECT){
+            throw ctxt.mappingException(ImmutableEvent.Target.class);
+        }
+        String url = null;
+        ImmutableList.Builder<String> types = ImmutableList.builder();
+        while(jp.nextToken() == JsonToken.FIELD_NAME){
+            String name = jp.getCurrentName();
+            JsonToken value = jp.nextToken();
+            if("url".equals(name) && value == JsonToken.VALUE_STRING){
+                url = jp.getText();
+            }else if("types".equals(name) && value == JsonToken.START_ARRAY){
+                while(jp.nextToken() != JsonToken.END_ARRAY){
+                    types.add(jp.getText());
+                }
+            }else{
+                jp.skipChildren();
+            }
+        }
+        return new ImmutableEvent.Target(url, types.build());
+    }
+}
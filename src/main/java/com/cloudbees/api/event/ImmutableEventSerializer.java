@@ -0,0 +1,70 @@
+package com.cloudbees.api.event;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes an {@link ImmutableEvent} straight to the generator, in the same JSON form as {@link Event}. Null fields are
+ * left out.
+ */
+public class ImmutableEventSerializer extends JsonSerializer<ImmutableEvent> {
+    @Override
+    public void serialize(ImmutableEvent event, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        jgen.writeStartObject();
+        writeString(jgen, "id", event.getId());
+        writeTarget(jgen, "target", event.getTarget());
+        writeTarget(jgen, "source", event.getSource());
+        if(event.hasEventData()){
+            jgen.writeObjectFieldStart("event");
+            writeString(jgen, "title", event.getTitle());
+            writeString(jgen, "description", event.getDescription());
+            writeString(jgen, "icon", event.getIcon());
+            writeString(jgen, "url", event.getUrl());
+            Map<String, Object> extraData = event.getExtraDataOrNull();
+            if(extraData != null){
+                for(Map.Entry<String, Object> e : extraData.entrySet()){
+                    if(e.getValue() instanceof String){
+                        jgen.writeStringField(e.getKey(), (String) e.getValue());
+                    }else if(e.getValue() != null){
+                        provider.defaultSerializeField(e.getKey(), e.getValue(), jgen);
+                    }
+                }
+            }
+            jgen.writeEndObject();
+        }
+        writeString(jgen, "type", event.getType());
+        if(event.getExpiryTime() != null){
+            jgen.writeNumberField("expiry_time", event.getExpiryTime());
+        }
+        if(event.getActivationTime() != null){
+            jgen.writeNumberField("activation_time", event.getActivationTime());
+        }
+        jgen.writeEndObject();
+    }
+
+    private static void writeTarget(JsonGenerator jgen, String name, ImmutableEvent.Target target) throws IOException {
+        if(target == null){
+            return;
+        }
+        jgen.writeObjectFieldStart(name);
+        writeString(jgen, "url", target.getUrl());
+        jgen.writeArrayFieldStart("types");
+        List<String> types = target.getTypes();
+        for(int i = 0; i < types.size(); i++){
+            jgen.writeString(types.get(i));
+        }
+        jgen.writeEndArray();
+        jgen.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator jgen, String name, String value) throws IOException {
+        if(value != null){
+            jgen.writeStringField(name, value);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.cloudbees.api.event;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EventApiMetrics} keeping per operation counters and latency histograms in memory. Take a
+ * {@link #snapshot()} to read them:
+ *
+ * <pre>
+ *     InMemoryEventApiMetrics metrics = new InMemoryEventApiMetrics();
+ *     EventApi.RestClient restClient = new EventApi.RestClient.Builder().metrics(metrics).build();
+ *     ...
+ *     InMemoryEventApiMetrics.Snapshot publish = metrics.snapshot().get(EventApiMetrics.PUBLISH);
+ *     publish.getLatencyMillis(99.0);
+ * </pre>
+ */
+public class InMemoryEventApiMetrics implements EventApiMetrics {
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<String, OperationStats>();
+
+    @Override
+    public void requestStarted(String operation) {
+        stats(operation).inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void requestCompleted(String operation, int status, long latencyNanos, long requestBytes) {
+        OperationStats stats = stats(operation);
+        stats.inFlight.decrementAndGet();
+        stats.latency.record(latencyNanos);
+        stats.requestBytes.addAndGet(requestBytes);
+        if(status >= 300){
+            stats.errors.incrementAndGet();
+        }
+        AtomicLong counter = stats.statusCounts.get(status);
+        if(counter == null){
+            AtomicLong existing = stats.statusCounts.putIfAbsent(status, counter = new AtomicLong());
+            if(existing != null){
+                counter = existing;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    @Override
+    public void requestFailed(String operation, long latencyNanos, Throwable cause) {
+        OperationStats stats = stats(operation);
+        stats.inFlight.decrementAndGet();
+        stats.latency.record(latencyNanos);
+        stats.errors.incrementAndGet();
+        stats.failures.incrementAndGet();
+    }
+
+    @Override
+    public void responseRead(String operation, long responseBytes) {
+        stats(operation).responseBytes.addAndGet(responseBytes);
+    }
+
+    @Override
+    public void serialization(String operation, long nanos) {
+        stats(operation).serialization.record(nanos);
+    }
+
+    /**
+     * Current values of all operations seen so far, keyed by operation name
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshot = new TreeMap<String, Snapshot>();
+        for(Map.Entry<String, OperationStats> e : operations.entrySet()){
+            snapshot.put(e.getKey(), new Snapshot(e.getKey(), e.getValue()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Current values of the given operation, all zero if it wasn't called yet
+     */
+    public Snapshot snapshot(@Nonnull String operation) {
+        return new Snapshot(operation, stats(operation));
+    }
+
+    private OperationStats stats(String operation) {
+        OperationStats stats = operations.get(operation);
+        if(stats == null){
+            OperationStats existing = operations.putIfAbsent(operation, stats = new OperationStats());
+            if(existing != null){
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    private static class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram serialization = new LatencyHistogram();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+        private final ConcurrentMap<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+    }
+
+    /**
+     * Point in time view of the metrics of one operation. Counters are cumulative since the metrics were created.
+     */
+    public static class Snapshot {
+        private final String operation;
+        private final long count;
+        private final int inFlight;
+        private final long errors;
+        private final long failures;
+        private final long requestBytes;
+        private final long responseBytes;
+        private final Map<Integer, Long> statusCounts;
+        private final LatencyHistogram latency;
+        private final LatencyHistogram serialization;
+
+        private Snapshot(String operation, OperationStats stats) {
+            this.operation = operation;
+            this.count = stats.latency.getCount();
+            this.inFlight = stats.inFlight.get();
+            this.errors = stats.errors.get();
+            this.failures = stats.failures.get();
+            this.requestBytes = stats.requestBytes.get();
+            this.responseBytes = stats.responseBytes.get();
+            ImmutableMap.Builder<Integer, Long> statuses = ImmutableMap.builder();
+            for(Map.Entry<Integer, AtomicLong> e : new TreeMap<Integer, AtomicLong>(stats.statusCounts).entrySet()){
+                statuses.put(e.getKey(), e.getValue().get());
+            }
+            this.statusCounts = statuses.build();
+            this.latency = stats.latency.copy();
+            this.serialization = stats.serialization.copy();
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * Number of completed or failed requests
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Requests that failed without response or returned a status >= 300
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Requests that failed without response
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getRequestBytes() {
+            return requestBytes;
+        }
+
+        public long getResponseBytes() {
+            return responseBytes;
+        }
+
+        /**
+         * Number of responses per HTTP status code
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            return statusCounts;
+        }
+
+        /**
+         * Response latency at the given percentile, in milliseconds
+         */
+        public double getLatencyMillis(double percentile) {
+            return toMillis(latency.getValueAtPercentile(percentile));
+        }
+
+        public double getMeanLatencyMillis() {
+            return latency.getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        public double getMaxLatencyMillis() {
+            return toMillis(latency.getMax());
+        }
+
+        /**
+         * JSON binding time at the given percentile, in milliseconds
+         */
+        public double getSerializationMillis(double percentile) {
+            return toMillis(serialization.getValueAtPercentile(percentile));
+        }
+
+        private static double toMillis(long nanos) {
+            return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: count=%d inFlight=%d errors=%d p50=%.2fms p99=%.2fms max=%.2fms status=%s",
+                    operation, count, inFlight, errors, getLatencyMillis(50), getLatencyMillis(99),
+                    getMaxLatencyMillis(), statusCounts);
+        }
+    }
+}
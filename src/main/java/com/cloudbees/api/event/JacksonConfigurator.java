@@ -1,9 +1,10 @@
 package com.cloudbees.api.event;
 
+import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.codehaus.jackson.map.module.SimpleModule;
 
 import javax.ws.rs.ext.ContextResolver;
 
@@ -15,14 +16,23 @@ public class JacksonConfigurator implements ContextResolver<ObjectMapper> {
     private final ObjectMapper mapper;
 
     public JacksonConfigurator(ObjectMapper mapper) {
-        this.mapper = mapper;
-        mapper.setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
-        mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        mapper.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
+        this.mapper = configure(mapper);
     }
 
     public ObjectMapper getContext(Class<?> arg0) {
         return mapper;
     }
-}
 
+    /**
+     * Applies the settings the Event API expects and registers the hand-written {@link ImmutableEvent} serializers
+     */
+    static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
+        mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        SimpleModule module = new SimpleModule("cloudbees-event-api", new Version(1, 0, 0, null));
+        module.addSerializer(ImmutableEvent.class, new ImmutableEventSerializer());
+        module.addDeserializer(ImmutableEvent.class, new ImmutableEventDeserializer());
+        mapper.registerModule(module);
+        return mapper;
+    }
+}
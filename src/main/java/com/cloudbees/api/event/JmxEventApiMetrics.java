@@ -0,0 +1,168 @@
+package com.cloudbees.api.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link InMemoryEventApiMetrics} that also registers one MXBean per operation with the platform MBean server, under
+ * <code>com.cloudbees.api.event:type=EventApiMetrics,name=&lt;name&gt;,operation=&lt;operation&gt;</code>.
+ *
+ * <pre>
+ *     JmxEventApiMetrics metrics = new JmxEventApiMetrics("publisher");
+ *     EventApi.RestClient restClient = new EventApi.RestClient.Builder().metrics(metrics).build();
+ *     ...
+ *     metrics.close(); // unregisters the MXBeans
+ * </pre>
+ */
+public class JmxEventApiMetrics extends InMemoryEventApiMetrics implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(JmxEventApiMetrics.class);
+    private static final String[] OPERATIONS = {PUBLISH, READ_EVENT, QUERY, DELETE};
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final List<ObjectName> registered = new ArrayList<ObjectName>();
+
+    /**
+     * @param name distinguishes the MXBeans of this instance from others in the same JVM
+     */
+    public JmxEventApiMetrics(@Nonnull String name) throws EventApiException {
+        try {
+            for(String operation : OPERATIONS){
+                ObjectName objectName = new ObjectName(String.format(
+                        "com.cloudbees.api.event:type=EventApiMetrics,name=%s,operation=%s",
+                        ObjectName.quote(name), operation));
+                server.registerMBean(new Operation(operation), objectName);
+                registered.add(objectName);
+            }
+        } catch (JMException e) {
+            close();
+            throw new EventApiException("Failed to register EventApi metrics MXBeans: "+e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Unregisters the MXBeans
+     */
+    @Override
+    public void close() {
+        for(ObjectName objectName : registered){
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.warn("Failed to unregister "+objectName+": "+e.getMessage());
+            }
+        }
+        registered.clear();
+    }
+
+    /**
+     * Attributes exposed for each operation. Latencies are in milliseconds.
+     */
+    public interface OperationMXBean {
+        long getCount();
+        int getInFlight();
+        long getErrors();
+        long getFailures();
+        long getRequestBytes();
+        long getResponseBytes();
+        Map<Integer, Long> getStatusCounts();
+        double getMeanLatency();
+        double getLatency50thPercentile();
+        double getLatency90thPercentile();
+        double getLatency99thPercentile();
+        double getLatency999thPercentile();
+        double getMaxLatency();
+        double getSerialization99thPercentile();
+    }
+
+    private class Operation implements OperationMXBean {
+        private final String operation;
+
+        private Operation(String operation) {
+            this.operation = operation;
+        }
+
+        private Snapshot snapshot() {
+            return JmxEventApiMetrics.this.snapshot(operation);
+        }
+
+        @Override
+        public long getCount() {
+            return snapshot().getCount();
+        }
+
+        @Override
+        public int getInFlight() {
+            return snapshot().getInFlight();
+        }
+
+        @Override
+        public long getErrors() {
+            return snapshot().getErrors();
+        }
+
+        @Override
+        public long getFailures() {
+            return snapshot().getFailures();
+        }
+
+        @Override
+        public long getRequestBytes() {
+            return snapshot().getRequestBytes();
+        }
+
+        @Override
+        public long getResponseBytes() {
+            return snapshot().getResponseBytes();
+        }
+
+        @Override
+        public Map<Integer, Long> getStatusCounts() {
+            return snapshot().getStatusCounts();
+        }
+
+        @Override
+        public double getMeanLatency() {
+            return snapshot().getMeanLatencyMillis();
+        }
+
+        @Override
+        public double getLatency50thPercentile() {
+            return snapshot().getLatencyMillis(50);
+        }
+
+        @Override
+        public double getLatency90thPercentile() {
+            return snapshot().getLatencyMillis(90);
+        }
+
+        @Override
+        public double getLatency99thPercentile() {
+            return snapshot().getLatencyMillis(99);
+        }
+
+        @Override
+        public double getLatency999thPercentile() {
+            return snapshot().getLatencyMillis(99.9);
+        }
+
+        @Override
+        public double getMaxLatency() {
+            return snapshot().getMaxLatencyMillis();
+        }
+
+        @Override
+        public double getSerialization99thPercentile() {
+            return snapshot().getSerializationMillis(99);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.cloudbees.api.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, typically latencies in nanoseconds.
+ *
+ * Buckets are log-linear in the manner of HdrHistogram: values below 32 get a bucket each, above that every power of
+ * two range is split in 32 equal buckets, so any recorded value is reported within about 3% of its actual value while
+ * the whole long range fits in under 2000 counters.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if(value < 0){
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax;
+        while(value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)){
+            // retry
+        }
+    }
+
+    /**
+     * Copy of the current state of this histogram, unaffected by later recordings
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for(int i = 0; i < BUCKETS; i++){
+            long n = counts.get(i);
+            if(n != 0){
+                copy.counts.set(i, n);
+            }
+        }
+        copy.count.set(count.get());
+        copy.sum.set(sum.get());
+        copy.max.set(max.get());
+        return copy;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Value below which the given percentage of recorded values fall, 0 if nothing was recorded
+     *
+     * @param percentile between 0 and 100, for example 99.9
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            total += counts.get(i);
+        }
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts.get(i);
+            if(seen >= rank){
+                return Math.min(highestValueIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int indexOf(long value) {
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowestValueIn(int index) {
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+
+    private static long highestValueIn(int index) {
+        return index + 1 < BUCKETS ? lowestValueIn(index + 1) - 1 : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,131 @@
+package com.cloudbees.api.event;
+
+import com.sun.jersey.api.client.AbstractClientRequestAdapter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Reports every request going through the RestClient to an {@link EventApiMetrics}.
+ */
+class MetricsFilter extends ClientFilter {
+    private final EventApiMetrics metrics;
+
+    MetricsFilter(EventApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        final String operation = operationOf(request);
+        ByteCounter counter = null;
+        if(request.getEntity() != null){
+            counter = new ByteCounter(request.getAdapter());
+            request.setAdapter(counter);
+        }
+
+        metrics.requestStarted(operation);
+        long start = System.nanoTime();
+        ClientResponse response;
+        try {
+            response = getNext().handle(request);
+        } catch (RuntimeException e) {
+            metrics.requestFailed(operation, System.nanoTime() - start, e);
+            throw e;
+        }
+        metrics.requestCompleted(operation, response.getStatus(), System.nanoTime() - start,
+                counter != null ? counter.written : 0);
+
+        response.setEntityInputStream(new FilterInputStream(response.getEntityInputStream()) {
+            private long read;
+            private boolean reported;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if(b < 0){
+                    report();
+                }else{
+                    read++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if(n < 0){
+                    report();
+                }else{
+                    read += n;
+                }
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                report();
+                super.close();
+            }
+
+            private void report() {
+                if(!reported){
+                    reported = true;
+                    metrics.responseRead(operation, read);
+                }
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Maps a request to the EventApi operation that sent it
+     */
+    static String operationOf(ClientRequest request) {
+        String method = request.getMethod();
+        if("POST".equals(method)){
+            return EventApiMetrics.PUBLISH;
+        }
+        if("DELETE".equals(method)){
+            return EventApiMetrics.DELETE;
+        }
+        String path = request.getURI().getPath();
+        if(request.getURI().getRawQuery() != null || path == null || path.endsWith(EventApi.EVENT_API_PATH)){
+            return EventApiMetrics.QUERY;
+        }
+        return EventApiMetrics.READ_EVENT;
+    }
+
+    private static class ByteCounter extends AbstractClientRequestAdapter {
+        private volatile long written;
+
+        private ByteCounter(ClientRequestAdapter adapter) {
+            super(adapter);
+        }
+
+        @Override
+        public OutputStream adapt(ClientRequest request, OutputStream entityStream) throws IOException {
+            return new FilterOutputStream(getAdapter().adapt(request, entityStream)) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    written++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    written += len;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.cloudbees.api.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a query over a long time range as several concurrent queries over consecutive slices of the range.
+ *
+ * The <code>[from, to)</code> range of the query is cut into slices that are each fetched page by page, like
+ * {@link EventApi#queryStream(QueryEventObject)} does, by up to <code>parallelism</code> threads. The slices are then
+ * merged by activation time, oldest first, and events returned by more than one slice are only kept once. Each slice
+ * pages through fewer events than the whole range, so offsets stay small.
+ *
+ * <pre>
+ *     QueryEventObject query = new QueryEventObject.QueryBuilder(eventApi.eventApiUrl)
+ *             .account("cloudbees")
+ *             .from(monthStart)
+ *             .to(monthEnd)
+ *             .limit(500)         // page size of each slice
+ *             .build();
+ *
+ *     List&lt;Event&gt; events = new ParallelEventQuery.Builder(eventApi, query)
+ *             .parallelism(8)
+ *             .sliceDuration(1, TimeUnit.DAYS)
+ *             .build()
+ *             .execute();
+ * </pre>
+ */
+public class ParallelEventQuery {
+    static final Comparator<Event> BY_ACTIVATION_TIME = new Comparator<Event>() {
+        @Override
+        public int compare(Event e1, Event e2) {
+            long t1 = e1.getActivationTime() != null ? e1.getActivationTime() : Long.MIN_VALUE;
+            long t2 = e2.getActivationTime() != null ? e2.getActivationTime() : Long.MIN_VALUE;
+            return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+        }
+    };
+
+    private final EventApi eventApi;
+    private final List<QueryEventObject> slices;
+    private final int parallelism;
+    private final int pageSize;
+
+    private ParallelEventQuery(Builder builder, List<QueryEventObject> slices) {
+        this.eventApi = builder.eventApi;
+        this.slices = slices;
+        this.parallelism = builder.parallelism;
+        this.pageSize = builder.query.getLimit() > 0 ? builder.query.getLimit() : EventApi.DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Queries of the individual slices, in time order
+     */
+    public List<QueryEventObject> getSlices() {
+        return Collections.unmodifiableList(slices);
+    }
+
+    /**
+     * Fetches all slices and returns their merged events ordered by activation time
+     *
+     * @throws EventApiException if any slice query fails, the remaining ones are cancelled
+     */
+    public List<Event> execute() throws EventApiException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, slices.size()),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-query-%d").build());
+        try {
+            List<Future<List<Event>>> futures = new ArrayList<Future<List<Event>>>(slices.size());
+            for(final QueryEventObject slice : slices){
+                futures.add(executor.submit(new Callable<List<Event>>() {
+                    @Override
+                    public List<Event> call() throws Exception {
+                        return fetch(slice);
+                    }
+                }));
+            }
+            List<List<Event>> results = new ArrayList<List<Event>>(slices.size());
+            for(Future<List<Event>> future : futures){
+                results.add(future.get());
+            }
+            return merge(results);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof EventApiException){
+                throw (EventApiException) cause;
+            }
+            if(cause instanceof RuntimeException && cause.getCause() instanceof EventApiException){
+                throw (EventApiException) cause.getCause();
+            }
+            throw new EventApiException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventApiException("Interrupted while waiting for query results", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Event> fetch(QueryEventObject slice) {
+        List<Event> events = new ArrayList<Event>();
+        EventIterator it = new EventIterator(eventApi, slice, pageSize);
+        try {
+            while(it.hasNext()){
+                events.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        // Stable sort, the Event API doesn't promise any order within a page
+        Collections.sort(events, BY_ACTIVATION_TIME);
+        return events;
+    }
+
+    /**
+     * K-way merge of sorted slice results. Duplicates share their activation time, so only the ids seen at the
+     * current activation time need to be remembered.
+     */
+    static List<Event> merge(final List<List<Event>> sorted) {
+        int total = 0;
+        for(List<Event> events : sorted){
+            total += events.size();
+        }
+        List<Event> merged = new ArrayList<Event>(total);
+
+        PriorityQueue<Cursor> heads = new PriorityQueue<Cursor>(Math.max(1, sorted.size()));
+        for(int i = 0; i < sorted.size(); i++){
+            if(!sorted.get(i).isEmpty()){
+                heads.add(new Cursor(i, sorted.get(i)));
+            }
+        }
+
+        Set<String> idsAtTime = new HashSet<String>();
+        Event previous = null;
+        Cursor cursor;
+        while((cursor = heads.poll()) != null){
+            Event event = cursor.head();
+            if(previous == null || BY_ACTIVATION_TIME.compare(previous, event) != 0){
+                idsAtTime.clear();
+            }
+            if(event.getId() == null || idsAtTime.add(event.getId())){
+                merged.add(event);
+            }
+            previous = event;
+            if(cursor.advance()){
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static class Cursor implements Comparable<Cursor> {
+        private final int slice;
+        private final List<Event> events;
+        private int position;
+
+        private Cursor(int slice, List<Event> events) {
+            this.slice = slice;
+            this.events = events;
+        }
+
+        private Event head() {
+            return events.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < events.size();
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int c = BY_ACTIVATION_TIME.compare(head(), other.head());
+            return c != 0 ? c : (slice < other.slice ? -1 : (slice == other.slice ? 0 : 1));
+        }
+    }
+
+    public static class Builder {
+        private final EventApi eventApi;
+        private final QueryEventObject query;
+        private int parallelism = 4;
+        private int slices;
+        private long sliceDurationMillis;
+
+        /**
+         * @param eventApi EventApi used to send the slice queries
+         * @param query query with both from and to set. Its limit is used as page size of the slice queries, its
+         *              offset is ignored.
+         */
+        public Builder(@Nonnull EventApi eventApi, @Nonnull QueryEventObject query) {
+            this.eventApi = eventApi;
+            this.query = query;
+        }
+
+        /**
+         * Maximum number of slice queries in flight. Defaults to 4.
+         */
+        public Builder parallelism(int parallelism){
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Number of slices of equal duration to cut the range in. Defaults to 4 times the parallelism.
+         */
+        public Builder slices(int slices){
+            this.slices = slices;
+            this.sliceDurationMillis = 0;
+            return this;
+        }
+
+        /**
+         * Cuts the range in slices of the given duration instead of a fixed number of slices
+         */
+        public Builder sliceDuration(long duration, @Nonnull TimeUnit unit){
+            this.sliceDurationMillis = unit.toMillis(duration);
+            this.slices = 0;
+            return this;
+        }
+
+        public ParallelEventQuery build() throws EventApiException {
+            if(query.getFrom() == null || query.getTo() == null){
+                throw new EventApiException("Query must have both from and to set");
+            }
+            if(parallelism <= 0){
+                throw new EventApiException("parallelism must be greater than 0");
+            }
+            long from = query.getFrom().getTime();
+            long to = query.getTo().getTime();
+            if(to <= from){
+                throw new EventApiException("Query to must be after from");
+            }
+
+            long duration = sliceDurationMillis;
+            if(duration <= 0){
+                int count = slices > 0 ? slices : 4 * parallelism;
+                duration = Math.max(1, (to - from + count - 1) / count);
+            }
+            List<QueryEventObject> sliceQueries = new ArrayList<QueryEventObject>();
+            for(long start = from; start < to; start += duration){
+                sliceQueries.add(new QueryEventObject.QueryBuilder(query)
+                        .from(new Date(start))
+                        .to(new Date(Math.min(start + duration, to)))
+                        .offset(0)
+                        .build());
+            }
+            return new ParallelEventQuery(this, sliceQueries);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.cloudbees.api.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.client.apache4.ApacheHttpClient4Handler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HttpTransport} backed by a pool of persistent Apache HttpClient connections, so TLS handshakes are paid once
+ * per connection instead of once per request.
+ *
+ * One transport, through one {@link EventApi.RestClient}, can be shared by any number of {@link EventApi} instances
+ * in the same JVM, including instances using different access tokens:
+ *
+ * <pre>
+ *     EventApi.RestClient restClient = new EventApi.RestClient(new PooledHttpTransport.Builder()
+ *             .maxConnections(100)
+ *             .readTimeout(30, TimeUnit.SECONDS)
+ *             .build());
+ *
+ *     EventApi eventApi = new EventApi(accessToken, eventEndpoint, restClient);
+ * </pre>
+ *
+ * Connections idle for longer than the idle timeout are evicted by a background thread.
+ */
+public class PooledHttpTransport implements HttpTransport {
+    private static final Logger logger = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ScheduledExecutorService evictor;
+
+    private PooledHttpTransport(Builder builder) {
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(builder.maxConnections);
+        connectionManager.setDefaultMaxPerRoute(builder.maxConnectionsPerRoute);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(builder.connectTimeoutMillis)
+                .setSocketTimeout(builder.readTimeoutMillis)
+                .setConnectionRequestTimeout(builder.connectionRequestTimeoutMillis)
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+
+        final long idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-api-connection-evictor-%d").build());
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        }, idleTimeoutMillis, Math.max(idleTimeoutMillis / 2, 1), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ClientHandler createClientHandler(ClientConfig config) {
+        return new ApacheHttpClient4Handler(httpClient, null, false);
+    }
+
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close HTTP connection pool: "+e.getMessage(), e);
+        }
+    }
+
+    public static class Builder {
+        private int maxConnections = 100;
+        private int maxConnectionsPerRoute = 20;
+        private int connectTimeoutMillis = 10000;
+        private int readTimeoutMillis = 60000;
+        private int connectionRequestTimeoutMillis = 60000;
+        private long idleTimeoutMillis = 30000;
+
+        /**
+         * Maximum number of open connections across all hosts. Defaults to 100.
+         */
+        public Builder maxConnections(int maxConnections){
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Maximum number of open connections to a single host. Defaults to 20.
+         */
+        public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute){
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        /**
+         * Timeout for establishing a connection. Defaults to 10 seconds.
+         */
+        public Builder connectTimeout(long timeout, @Nonnull TimeUnit unit){
+            this.connectTimeoutMillis = (int) unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Timeout waiting for data on an open connection. Defaults to 60 seconds.
+         */
+        public Builder readTimeout(long timeout, @Nonnull TimeUnit unit){
+            this.readTimeoutMillis = (int) unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Timeout waiting for a free connection when the pool is exhausted. Defaults to 60 seconds.
+         */
+        public Builder connectionRequestTimeout(long timeout, @Nonnull TimeUnit unit){
+            this.connectionRequestTimeoutMillis = (int) unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Time after which an unused connection is closed. Defaults to 30 seconds.
+         */
+        public Builder idleTimeout(long timeout, @Nonnull TimeUnit unit){
+            this.idleTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public PooledHttpTransport build() throws EventApiException {
+            if(maxConnections <= 0 || maxConnectionsPerRoute <= 0){
+                throw new EventApiException("maxConnections and maxConnectionsPerRoute must be greater than 0");
+            }
+            if(idleTimeoutMillis <= 0){
+                throw new EventApiException("idleTimeout must be greater than 0");
+            }
+            return new PooledHttpTransport(this);
+        }
+    }
+}
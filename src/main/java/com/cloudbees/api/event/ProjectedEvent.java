@@ -0,0 +1,88 @@
+package com.cloudbees.api.event;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Projected fields of an event read with an {@link EventProjection}. Fields missing from the event, or not in the
+ * projection, are null.
+ */
+public class ProjectedEvent {
+    private final EventProjection projection;
+    private final Object[] values;
+
+    ProjectedEvent(EventProjection projection, Object[] values) {
+        this.projection = projection;
+        this.values = values;
+    }
+
+    /**
+     * Value of a projected field: a String, Number, Boolean, or a Map or List for objects and arrays
+     *
+     * @param path path of a projected field, such as <code>event.title</code>
+     * @throws IllegalArgumentException if the field isn't projected
+     */
+    @Nullable
+    public Object get(@Nonnull String path) {
+        int index = projection.indexOf(path);
+        if(index < 0){
+            throw new IllegalArgumentException("Field "+path+" isn't projected, projected fields are "
+                    +projection.getFields());
+        }
+        return values[index];
+    }
+
+    @Nullable
+    public String getString(@Nonnull String path) {
+        Object value = get(path);
+        return value != null ? value.toString() : null;
+    }
+
+    @Nullable
+    public Long getLong(@Nonnull String path) {
+        Object value = get(path);
+        if(value == null || value instanceof Long){
+            return (Long) value;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString());
+    }
+
+    /**
+     * Projected <code>id</code>
+     */
+    public String getId() {
+        return getString("id");
+    }
+
+    /**
+     * Projected <code>type</code>
+     */
+    public String getType() {
+        return getString("type");
+    }
+
+    /**
+     * Projected <code>activation_time</code>, in seconds since the epoch
+     */
+    public Long getActivationTime() {
+        return getLong("activation_time");
+    }
+
+    /**
+     * Projected fields by path, in projection order
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for(int i = 0; i < values.length; i++){
+            map.put(projection.getFields().get(i), values[i]);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
@@ -0,0 +1,415 @@
+package com.cloudbees.api.event;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of query results by time range, used by {@link EventApi#query(QueryEventObject)} for queries with both from
+ * and to set. Install it with {@link EventApi#setQueryCache(QueryCache)}.
+ *
+ * Queries are grouped by their filter, that is everything but from, to, limit and offset. For each filter the cache
+ * keeps the time segments already fetched with all their events. A query for a window overlapping cached segments
+ * takes their events locally and only asks the server for the parts of the window not covered yet, so a sliding
+ * "last 24 hours" window refreshed every minute only downloads the newest minute. Limit and offset are applied to the
+ * assembled result.
+ *
+ * The most recent part of a window, within <code>settleTime</code> of now, is always fetched and never cached since
+ * events may still be published into it. Publishing an event with an activation time through the same EventApi drops
+ * the cached segments containing that time, deleting an event removes it from the cache. Events published or deleted
+ * by other clients in already cached, settled segments aren't seen until the segments are evicted: whole filters are
+ * evicted least recently used first once the cache holds more than <code>maximumEvents</code>. Events delivered by an
+ * {@link EventOutbox} count as published by another client, the outbox doesn't invalidate the cache.
+ *
+ * Cached {@link Event} objects are shared between callers and must not be modified.
+ */
+public class QueryCache {
+    private final long maximumEvents;
+    private final long settleMillis;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Segments> byFilter = new LinkedHashMap<String, Segments>(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long partialHits;
+    private long misses;
+    private long evictions;
+    // Incremented whenever cached events are dropped, so that a fetch overlapping an invalidation isn't cached
+    private long invalidations;
+
+    private QueryCache(Builder builder) {
+        this.maximumEvents = builder.maximumEvents;
+        this.settleMillis = builder.settleMillis;
+    }
+
+    /**
+     * Cache statistics since creation
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, partialHits, misses, evictions, size);
+    }
+
+    /**
+     * Drops all cached segments
+     */
+    public synchronized void invalidateAll() {
+        byFilter.clear();
+        size = 0;
+        invalidations++;
+    }
+
+    /**
+     * Runs a query with from and to set, see {@link EventApi#query(QueryEventObject)}
+     */
+    List<Event> query(EventApi eventApi, QueryEventObject query) throws EventApiException {
+        String key = query.filterKey();
+        long from = query.getFrom().getTime();
+        long to = query.getTo().getTime();
+        long settled = Math.max(from, Math.min(to, System.currentTimeMillis() - settleMillis));
+
+        List<List<Event>> parts = new ArrayList<List<Event>>();
+        List<long[]> gaps;
+        long invalidationsBefore;
+        synchronized (this){
+            invalidationsBefore = invalidations;
+            Segments segments = byFilter.get(key);
+            if(segments != null){
+                parts.add(segments.collect(from, settled));
+                gaps = segments.gaps(from, settled);
+            }else{
+                gaps = from < settled
+                        ? Collections.singletonList(new long[]{from, settled})
+                        : Collections.<long[]>emptyList();
+            }
+            boolean covered = from < settled
+                    && (gaps.isEmpty() || gaps.get(0)[0] != from || gaps.get(0)[1] != settled);
+            if(gaps.isEmpty() && settled == to){
+                hits++;
+            }else if(covered){
+                partialHits++;
+            }else{
+                misses++;
+            }
+        }
+
+        for(long[] gap : gaps){
+            List<Event> events = fetch(eventApi, query, gap[0], gap[1]);
+            parts.add(events);
+            put(key, gap[0], gap[1], events, invalidationsBefore);
+        }
+        if(settled < to){
+            parts.add(fetch(eventApi, query, settled, to));
+        }
+
+        List<Event> events = ParallelEventQuery.merge(parts);
+        int offset = Math.min(query.getOffset(), events.size());
+        int end = query.getLimit() > 0 ? (int) Math.min((long) offset + query.getLimit(), events.size()) : events.size();
+        return offset == 0 && end == events.size() ? events : new ArrayList<Event>(events.subList(offset, end));
+    }
+
+    /**
+     * Drops the cached segments containing the given activation time, after an event was published
+     */
+    synchronized void invalidate(long activationMillis) {
+        for(Segments segments : byFilter.values()){
+            size -= segments.invalidate(activationMillis);
+        }
+        invalidations++;
+    }
+
+    /**
+     * Removes a deleted event
+     */
+    synchronized void remove(String eventId) {
+        for(Segments segments : byFilter.values()){
+            size -= segments.remove(eventId);
+        }
+        invalidations++;
+    }
+
+    /**
+     * Caches a fetched segment, unless events were published or deleted since the fetch started: the segment could
+     * miss them or still hold them.
+     */
+    private synchronized void put(String key, long from, long to, List<Event> events, long invalidationsBefore) {
+        if(invalidations != invalidationsBefore){
+            return;
+        }
+        Segments segments = byFilter.get(key);
+        if(segments == null){
+            segments = new Segments();
+            byFilter.put(key, segments);
+        }
+        size += segments.put(from, to, events);
+
+        Iterator<Segments> eldest = byFilter.values().iterator();
+        while(size > maximumEvents && eldest.hasNext()){
+            size -= eldest.next().size;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Fetches all events in [from, to), sorted by activation time
+     */
+    private static List<Event> fetch(EventApi eventApi, QueryEventObject query, long from, long to)
+            throws EventApiException {
+        // Whether the Event API treats from and to as inclusive isn't specified, ask for a bit more and filter
+        QueryEventObject range = new QueryEventObject.QueryBuilder(query)
+                .from(new Date(from - 1))
+                .to(new Date(to + 1))
+                .limit(EventApi.DEFAULT_PAGE_SIZE)
+                .offset(0)
+                .build();
+        List<Event> events = new ArrayList<Event>();
+        EventIterator it = new EventIterator(eventApi, range, EventApi.DEFAULT_PAGE_SIZE);
+        try {
+            while(it.hasNext()){
+                Event event = it.next();
+                long time = activationMillis(event);
+                if(time >= from && time < to){
+                    events.add(event);
+                }
+            }
+        } catch (RuntimeException e) {
+            if(e.getCause() instanceof EventApiException){
+                throw (EventApiException) e.getCause();
+            }
+            throw e;
+        } finally {
+            it.close();
+        }
+        Collections.sort(events, ParallelEventQuery.BY_ACTIVATION_TIME);
+        return events;
+    }
+
+    private static long activationMillis(Event event) {
+        return event.getActivationTime() != null ? Event.toMillis(event.getActivationTime()) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Disjoint, non-adjacent time segments of one filter, by start time
+     */
+    private static class Segments {
+        private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+        private long size;
+
+        /**
+         * Cached events in [from, to)
+         */
+        List<Event> collect(long from, long to) {
+            List<Event> events = new ArrayList<Event>();
+            for(Segment segment : overlapping(from, to)){
+                for(Event event : segment.events){
+                    long time = activationMillis(event);
+                    if(time >= from && time < to){
+                        events.add(event);
+                    }
+                }
+            }
+            return events;
+        }
+
+        /**
+         * Parts of [from, to) not covered by a segment
+         */
+        List<long[]> gaps(long from, long to) {
+            List<long[]> gaps = new ArrayList<long[]>();
+            long start = from;
+            for(Segment segment : overlapping(from, to)){
+                if(segment.from > start){
+                    gaps.add(new long[]{start, segment.from});
+                }
+                start = Math.max(start, segment.to);
+            }
+            if(start < to){
+                gaps.add(new long[]{start, to});
+            }
+            return gaps;
+        }
+
+        /**
+         * Adds a fetched segment, merging it with the segments it overlaps or touches
+         *
+         * @return change in the number of cached events
+         */
+        long put(long from, long to, List<Event> events) {
+            long before = size;
+            List<List<Event>> merged = new ArrayList<List<Event>>();
+            merged.add(events);
+            Long floor = segments.floorKey(from);
+            Iterator<Segment> it = segments.tailMap(floor != null ? floor : from).values().iterator();
+            while(it.hasNext()){
+                Segment segment = it.next();
+                if(segment.from > to){
+                    break;
+                }
+                if(segment.to < from){
+                    continue;
+                }
+                from = Math.min(from, segment.from);
+                to = Math.max(to, segment.to);
+                merged.add(segment.events);
+                size -= segment.events.size();
+                it.remove();
+            }
+            Segment segment = new Segment(from, to, merged.size() == 1
+                    ? new ArrayList<Event>(events)
+                    : ParallelEventQuery.merge(merged));
+            segments.put(from, segment);
+            size += segment.events.size();
+            return size - before;
+        }
+
+        /**
+         * @return number of events dropped
+         */
+        long invalidate(long time) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(time);
+            if(entry == null || entry.getValue().to <= time){
+                return 0;
+            }
+            segments.remove(entry.getKey());
+            size -= entry.getValue().events.size();
+            return entry.getValue().events.size();
+        }
+
+        /**
+         * @return number of events removed
+         */
+        long remove(String eventId) {
+            long removed = 0;
+            for(Segment segment : segments.values()){
+                Iterator<Event> it = segment.events.iterator();
+                while(it.hasNext()){
+                    if(eventId.equals(it.next().getId())){
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+            size -= removed;
+            return removed;
+        }
+
+        private Iterable<Segment> overlapping(long from, long to) {
+            Long floor = segments.floorKey(from);
+            List<Segment> overlapping = new ArrayList<Segment>();
+            for(Segment segment : segments.subMap(floor != null ? floor : from, true, to, false).values()){
+                if(segment.to > from){
+                    overlapping.add(segment);
+                }
+            }
+            return overlapping;
+        }
+    }
+
+    private static class Segment {
+        private final long from;
+        private final long to;
+        private final List<Event> events;
+
+        private Segment(long from, long to, List<Event> events) {
+            this.from = from;
+            this.to = to;
+            this.events = events;
+        }
+    }
+
+    public static class Stats {
+        private final long hitCount;
+        private final long partialHitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long size;
+
+        private Stats(long hitCount, long partialHitCount, long missCount, long evictionCount, long size) {
+            this.hitCount = hitCount;
+            this.partialHitCount = partialHitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.size = size;
+        }
+
+        /**
+         * Queries answered without contacting the server
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * Queries answered partly from the cache, fetching the rest of their window
+         */
+        public long getPartialHitCount() {
+            return partialHitCount;
+        }
+
+        /**
+         * Queries with no cached events in their window
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * Filters evicted with all their segments to stay within the maximum number of events
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * Number of cached events
+         */
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d partialHits=%d misses=%d evictions=%d size=%d",
+                    hitCount, partialHitCount, missCount, evictionCount, size);
+        }
+    }
+
+    public static class Builder {
+        private long maximumEvents = 100000;
+        private long settleMillis = TimeUnit.MINUTES.toMillis(1);
+
+        /**
+         * Maximum number of cached events over all filters. Defaults to 100000.
+         */
+        public Builder maximumEvents(long maximumEvents){
+            this.maximumEvents = maximumEvents;
+            return this;
+        }
+
+        /**
+         * How long before now events may still be published, the part of a window after now minus this time is
+         * always fetched from the server. Defaults to 1 minute.
+         */
+        public Builder settleTime(long settleTime, @Nonnull TimeUnit unit){
+            this.settleMillis = unit.toMillis(settleTime);
+            return this;
+        }
+
+        public QueryCache build() throws EventApiException {
+            if(maximumEvents <= 0){
+                throw new EventApiException("maximumEvents must be greater than 0");
+            }
+            if(settleMillis < 0){
+                throw new EventApiException("settleTime must not be negative");
+            }
+            return new QueryCache(this);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.cloudbees.api.event;
 
 import javax.annotation.Nonnull;
 import javax.ws.rs.core.UriBuilder;
+import java.util.Arrays;
 import java.util.Date;
 
 /**
@@ -18,12 +19,68 @@ public class QueryEventObject {
     private String[] types;
     private int limit;
     private int offset;
+    private String eventUri;
     private String queryUrl;
 
     public String toUri(){
         return queryUrl;
     }
 
+    public String getAccount() {
+        return account;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public String getCloudResource() {
+        return cloudResource;
+    }
+
+    public String getCloudResourceType() {
+        return cloudResourceType;
+    }
+
+    /**
+     * Event types, null if the query isn't restricted by type
+     */
+    public String[] getTypes() {
+        return types != null ? types.clone() : null;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Identifies the events this query selects regardless of time range and paging: the endpoint and all parameters
+     * but from, to, limit and offset, with types in sorted order
+     */
+    String filterKey() {
+        String[] sortedTypes = types != null ? types.clone() : new String[0];
+        Arrays.sort(sortedTypes);
+        return eventUri + "?account=" + account + "&service=" + service + "&resource=" + resource
+                + "&cloud_resource=" + cloudResource + "&cloud_resource_type=" + cloudResourceType
+                + "&types=" + Arrays.toString(sortedTypes);
+    }
+
     public static class QueryBuilder{
 
         private final QueryEventObject qeo;
@@ -32,6 +89,27 @@ public class QueryEventObject {
         public QueryBuilder(String eventUri){
             this.uriBuilder = UriBuilder.fromUri(eventUri);
             this.qeo = new QueryEventObject();
+            this.qeo.eventUri = eventUri;
+        }
+
+        /**
+         * Starts a new query with the same parameters as the given one, for example to fetch the next page
+         * of a query with a different offset.
+         *
+         * @param query query to copy
+         */
+        public QueryBuilder(@Nonnull QueryEventObject query){
+            this(query.eventUri);
+            this.qeo.account = query.account;
+            this.qeo.service = query.service;
+            this.qeo.resource = query.resource;
+            this.qeo.cloudResourceType = query.cloudResourceType;
+            this.qeo.cloudResource = query.cloudResource;
+            this.qeo.from = query.from;
+            this.qeo.to = query.to;
+            this.qeo.types = query.types;
+            this.qeo.limit = query.limit;
+            this.qeo.offset = query.offset;
         }
 
         public QueryBuilder account(String account){
@@ -146,7 +224,7 @@ public class QueryEventObject {
                 }
             }
             if(sb.length() > 0){
-                uriBuilder.queryParam(sb.toString());
+                uriBuilder.queryParam("types", sb.toString());
             }
 
             qeo.queryUrl = uriBuilder.build().toString();
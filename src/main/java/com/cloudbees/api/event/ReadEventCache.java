@@ -0,0 +1,222 @@
+package com.cloudbees.api.event;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of events read by {@link EventApi#readEvent(String)}, keyed by event URL. Install it with
+ * {@link EventApi#setReadCache(ReadEventCache)}.
+ *
+ * An entry is served from the cache until its time to live runs out: the default TTL, or sooner if the event's
+ * <code>expiry_time</code> comes first. Once stale, an entry that came with an ETag is revalidated with a conditional
+ * GET, a 304 response renews it without transferring the event again. Entries are dropped when the event is deleted
+ * through the same EventApi.
+ *
+ * Cached {@link Event} objects are shared between callers and must not be modified.
+ */
+public class ReadEventCache {
+    private final Cache<String, Entry> cache;
+    private final long ttlMillis;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    private ReadEventCache(Builder builder) {
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().recordStats();
+        if(builder.maximumWeight > 0){
+            cacheBuilder.maximumWeight(builder.maximumWeight).weigher(new Weigher<String, Entry>() {
+                @Override
+                public int weigh(String key, Entry entry) {
+                    return key.length() + entry.weight;
+                }
+            });
+        }else{
+            cacheBuilder.maximumSize(builder.maximumSize);
+        }
+        this.cache = cacheBuilder.build();
+        this.ttlMillis = builder.ttlMillis;
+    }
+
+    /**
+     * Cache statistics since creation
+     */
+    public Stats getStats() {
+        return new Stats(hits.get(), misses.get(), revalidations.get(), cache.stats().evictionCount(), cache.size());
+    }
+
+    /**
+     * Drops all entries
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Entry for the given URL, or null. The caller checks {@link Entry#isFresh()}.
+     */
+    @Nullable
+    Entry get(String eventUrl) {
+        Entry entry = cache.getIfPresent(eventUrl);
+        if(entry == null){
+            misses.incrementAndGet();
+        }else if(entry.isExpired()){
+            cache.invalidate(eventUrl);
+            misses.incrementAndGet();
+            return null;
+        }else if(entry.isFresh()){
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    void put(String eventUrl, Event event, @Nullable String etag, int weight) {
+        long now = System.currentTimeMillis();
+        long expiresAt = event.getExpiryTime() != null ? Event.toMillis(event.getExpiryTime()) : Long.MAX_VALUE;
+        if(expiresAt <= now){
+            return;
+        }
+        cache.put(eventUrl, new Entry(event, etag, Math.min(now + ttlMillis, expiresAt), expiresAt, weight));
+    }
+
+    /**
+     * The server confirmed a stale entry is unchanged
+     */
+    void revalidated(String eventUrl, Entry entry) {
+        revalidations.incrementAndGet();
+        put(eventUrl, entry.event, entry.etag, entry.weight);
+    }
+
+    void invalidate(String eventUrl) {
+        cache.invalidate(eventUrl);
+    }
+
+    static class Entry {
+        final Event event;
+        final String etag;
+        private final long freshUntil;
+        private final long expiresAt;
+        private final int weight;
+
+        private Entry(Event event, String etag, long freshUntil, long expiresAt, int weight) {
+            this.event = event;
+            this.etag = etag;
+            this.freshUntil = freshUntil;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < freshUntil;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    public static class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long revalidationCount;
+        private final long evictionCount;
+        private final long size;
+
+        private Stats(long hitCount, long missCount, long revalidationCount, long evictionCount, long size) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.revalidationCount = revalidationCount;
+            this.evictionCount = evictionCount;
+            this.size = size;
+        }
+
+        /**
+         * Reads served from the cache without contacting the server
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * Reads that found no usable entry
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * Stale entries the server confirmed with 304 Not Modified
+         */
+        public long getRevalidationCount() {
+            return revalidationCount;
+        }
+
+        /**
+         * Entries evicted to stay within the size or weight bound
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public double getHitRate() {
+            long total = hitCount + missCount + revalidationCount;
+            return total == 0 ? 1.0 : (double) hitCount / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d revalidations=%d evictions=%d size=%d",
+                    hitCount, missCount, revalidationCount, evictionCount, size);
+        }
+    }
+
+    public static class Builder {
+        private long maximumSize = 10000;
+        private long maximumWeight;
+        private long ttlMillis = TimeUnit.MINUTES.toMillis(5);
+
+        /**
+         * Maximum number of cached events. Defaults to 10000.
+         */
+        public Builder maximumSize(long maximumSize){
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Bounds the cache by the approximate size in bytes of the cached events instead of their number
+         */
+        public Builder maximumWeight(long maximumBytes){
+            this.maximumWeight = maximumBytes;
+            return this;
+        }
+
+        /**
+         * Time an event is served from the cache before it is revalidated or fetched again, shortened to the event's
+         * expiry time. Defaults to 5 minutes.
+         */
+        public Builder ttl(long ttl, @Nonnull TimeUnit unit){
+            this.ttlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        public ReadEventCache build() throws EventApiException {
+            if(maximumSize <= 0 && maximumWeight <= 0){
+                throw new EventApiException("maximumSize or maximumWeight must be greater than 0");
+            }
+            if(ttlMillis <= 0){
+                throw new EventApiException("ttl must be greater than 0");
+            }
+            return new ReadEventCache(this);
+        }
+    }
+}
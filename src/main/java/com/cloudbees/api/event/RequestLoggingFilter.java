@@ -0,0 +1,175 @@
+package com.cloudbees.api.event;
+
+import com.google.common.base.Charsets;
+import com.sun.jersey.api.client.AbstractClientRequestAdapter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs requests and responses at DEBUG level.
+ *
+ * Unlike Jersey's LoggingFilter it does nothing unless DEBUG is enabled for this class, so the entities are never
+ * buffered when logging is off. When on, only one in <code>sampleRate</code> exchanges is logged, entities are
+ * truncated to <code>maxEntitySize</code> bytes and the Authorization header is redacted.
+ */
+public class RequestLoggingFilter extends ClientFilter {
+    private static final Logger logger = LoggerFactory.getLogger(RequestLoggingFilter.class);
+
+    private final int sampleRate;
+    private final int maxEntitySize;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * @param sampleRate log one in sampleRate exchanges, 1 logs all of them
+     * @param maxEntitySize maximum number of bytes of request and response entities to log
+     */
+    public RequestLoggingFilter(int sampleRate, int maxEntitySize) {
+        this.sampleRate = Math.max(sampleRate, 1);
+        this.maxEntitySize = Math.max(maxEntitySize, 0);
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        if(!logger.isDebugEnabled()){
+            return getNext().handle(request);
+        }
+        long id = counter.getAndIncrement();
+        if(id % sampleRate != 0){
+            return getNext().handle(request);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(id).append(" > ").append(request.getMethod()).append(' ').append(request.getURI()).append('\n');
+        appendHeaders(sb, id, " > ", request.getHeaders());
+
+        EntityCapture capture = null;
+        if(request.getEntity() != null){
+            capture = new EntityCapture(request.getAdapter());
+            request.setAdapter(capture);
+        }
+
+        ClientResponse response = getNext().handle(request);
+
+        if(capture != null){
+            appendEntity(sb, capture.captured.toByteArray(), capture.truncated());
+        }
+        sb.append(id).append(" < ").append(response.getStatus()).append('\n');
+        appendHeaders(sb, id, " < ", response.getHeaders());
+        if(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)){
+            sb.append("(encoded entity)\n");
+        }else if(response.hasEntity()){
+            try {
+                InputStream in = response.getEntityInputStream();
+                byte[] prefix = readUpTo(in, maxEntitySize + 1);
+                response.setEntityInputStream(new SequenceInputStream(new ByteArrayInputStream(prefix), in));
+                if(prefix.length > 0){
+                    appendEntity(sb, prefix, prefix.length > maxEntitySize);
+                }
+            } catch (IOException e) {
+                throw new ClientHandlerException(e);
+            }
+        }
+        logger.debug(sb.toString());
+        return response;
+    }
+
+    private void appendHeaders(StringBuilder sb, long id, String prefix, MultivaluedMap<String, ?> headers) {
+        for(Map.Entry<String, ? extends List<?>> header : headers.entrySet()){
+            sb.append(id).append(prefix).append(header.getKey()).append(": ");
+            if(HttpHeaders.AUTHORIZATION.equalsIgnoreCase(header.getKey())){
+                sb.append("****");
+            }else{
+                boolean first = true;
+                for(Object value : header.getValue()){
+                    if(!first){
+                        sb.append(',');
+                    }
+                    sb.append(ClientRequest.getHeaderValue(value));
+                    first = false;
+                }
+            }
+            sb.append('\n');
+        }
+    }
+
+    private void appendEntity(StringBuilder sb, byte[] entity, boolean truncated) {
+        sb.append(new String(entity, 0, Math.min(entity.length, maxEntitySize), Charsets.UTF_8));
+        if(truncated){
+            sb.append("...");
+        }
+        sb.append('\n');
+    }
+
+    private static byte[] readUpTo(InputStream in, int max) throws IOException {
+        byte[] buffer = new byte[max];
+        int read = 0;
+        while(read < max){
+            int n = in.read(buffer, read, max - read);
+            if(n < 0){
+                break;
+            }
+            read += n;
+        }
+        if(read == max){
+            return buffer;
+        }
+        byte[] result = new byte[read];
+        System.arraycopy(buffer, 0, result, 0, read);
+        return result;
+    }
+
+    /**
+     * Copies the first bytes of the request entity as it is written
+     */
+    private class EntityCapture extends AbstractClientRequestAdapter {
+        private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        private long written;
+
+        private EntityCapture(ClientRequestAdapter adapter) {
+            super(adapter);
+        }
+
+        private boolean truncated() {
+            return written > maxEntitySize;
+        }
+
+        @Override
+        public OutputStream adapt(ClientRequest request, OutputStream entityStream) throws IOException {
+            return new FilterOutputStream(getAdapter().adapt(request, entityStream)) {
+                @Override
+                public void write(int b) throws IOException {
+                    if(written++ < maxEntitySize){
+                        captured.write(b);
+                    }
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    int room = (int) Math.max(0, Math.min(len, maxEntitySize - written));
+                    captured.write(b, off, room);
+                    written += len;
+                    out.write(b, off, len);
+                }
+            };
+        }
+    }
+}
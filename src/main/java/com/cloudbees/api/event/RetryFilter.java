@@ -0,0 +1,212 @@
+package com.cloudbees.api.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Applies a {@link RetryPolicy} to the requests of a RestClient.
+ *
+ * Each attempt sends a copy of the original request, since the filters below wrap the request adapter every time
+ * they handle a request.
+ */
+class RetryFilter extends ClientFilter {
+    private static final Logger logger = LoggerFactory.getLogger(RetryFilter.class);
+
+    /**
+     * GET latencies recorded before the hedge delay is computed
+     */
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    /**
+     * GET latencies recorded per histogram, the hedge delay follows the last one to two windows
+     */
+    private static final int HEDGE_WINDOW = 1000;
+
+    private final RetryPolicy policy;
+    private final Random random = new Random();
+    private final ExecutorService hedgeExecutor;
+
+    private volatile LatencyHistogram previousLatencies = new LatencyHistogram();
+    private final AtomicReference<LatencyHistogram> latencies =
+            new AtomicReference<LatencyHistogram>(new LatencyHistogram());
+
+    RetryFilter(RetryPolicy policy) {
+        this.policy = policy;
+        this.hedgeExecutor = policy.isHedging()
+                ? Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-api-hedge-%d").build())
+                : null;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        String method = request.getMethod();
+        boolean retryable = !"POST".equals(method) || request.getHeaders().containsKey(RetryPolicy.IDEMPOTENCY_KEY_HEADER);
+        boolean hedged = hedgeExecutor != null && "GET".equals(method);
+        ClientRequestAdapter adapter = request.getAdapter();
+
+        for(int attempt = 1; ; attempt++){
+            boolean last = !retryable || attempt >= policy.getMaxAttempts();
+            ClientResponse response;
+            try {
+                response = hedged ? sendHedged(request, adapter) : send(request, adapter);
+            } catch (ClientHandlerException e) {
+                if(last || !policy.isRetryable(e)){
+                    throw e;
+                }
+                logger.debug("Attempt {} of {} {} failed, retrying: {}",
+                        new Object[]{attempt, method, request.getURI(), e.getMessage()});
+                backoff(attempt, 0);
+                continue;
+            }
+            int status = response.getStatus();
+            if(last || !policy.isRetryable(status)){
+                return response;
+            }
+            long retryAfter = TimeUnit.MILLISECONDS.toNanos(
+                    ThrottlingFilter.retryAfterMillis(response.getHeaders().getFirst("Retry-After")));
+            if(retryAfter > policy.getMaxBackoff(TimeUnit.NANOSECONDS)){
+                // Waiting that long would look like a hang, let the caller decide
+                return response;
+            }
+            response.close();
+            logger.debug("Attempt {} of {} {} returned {}, retrying",
+                    new Object[]{attempt, method, request.getURI(), status});
+            backoff(attempt, retryAfter);
+        }
+    }
+
+    /**
+     * Sends a copy of the request, recording the latency of GET requests for hedging
+     */
+    private ClientResponse send(ClientRequest request, ClientRequestAdapter adapter) {
+        ClientRequest copy = request.clone();
+        copy.setAdapter(adapter);
+        copy.getProperties().putAll(request.getProperties());
+        if(hedgeExecutor == null || !"GET".equals(request.getMethod())){
+            return getNext().handle(copy);
+        }
+        long start = System.nanoTime();
+        ClientResponse response = getNext().handle(copy);
+        record(System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Sends the request and, if it isn't answered within the hedge delay, sends it again. The first response wins,
+     * a late one is closed as soon as it arrives.
+     */
+    private ClientResponse sendHedged(final ClientRequest request, final ClientRequestAdapter adapter) {
+        long delay = hedgeDelayNanos();
+        if(delay <= 0){
+            return send(request, adapter);
+        }
+        final AtomicBoolean answered = new AtomicBoolean();
+        Callable<ClientResponse> call = new Callable<ClientResponse>() {
+            @Override
+            public ClientResponse call() {
+                ClientResponse response = send(request, adapter);
+                if(answered.compareAndSet(false, true)){
+                    return response;
+                }
+                response.close();
+                return null;
+            }
+        };
+
+        CompletionService<ClientResponse> completion = new ExecutorCompletionService<ClientResponse>(hedgeExecutor);
+        int pending = 1;
+        completion.submit(call);
+        try {
+            Future<ClientResponse> done = completion.poll(delay, TimeUnit.NANOSECONDS);
+            if(done == null){
+                logger.debug("Hedging GET {} after {}ms", request.getURI(), TimeUnit.NANOSECONDS.toMillis(delay));
+                completion.submit(call);
+                pending++;
+                done = completion.take();
+            }
+            while(true){
+                pending--;
+                try {
+                    ClientResponse response = done.get();
+                    if(response != null){
+                        return response;
+                    }
+                } catch (ExecutionException e) {
+                    if(pending == 0){
+                        throw e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new ClientHandlerException(e.getCause());
+                    }
+                }
+                done = completion.take();
+            }
+        } catch (InterruptedException e) {
+            // Responses arriving from now on are closed
+            answered.set(true);
+            Thread.currentThread().interrupt();
+            throw new ClientHandlerException("Interrupted while waiting for response", e);
+        }
+    }
+
+    private void record(long latency) {
+        LatencyHistogram current = latencies.get();
+        current.record(latency);
+        // Concurrent GETs can take the count past the window before any of them sees it, one of them rotates
+        if(current.getCount() >= HEDGE_WINDOW && latencies.compareAndSet(current, new LatencyHistogram())){
+            previousLatencies = current;
+        }
+    }
+
+    /**
+     * Hedge delay from the latencies of recent GET requests, 0 until enough of them were recorded
+     */
+    private long hedgeDelayNanos() {
+        LatencyHistogram current = latencies.get();
+        LatencyHistogram recent = current.getCount() >= MIN_HEDGE_SAMPLES || previousLatencies.getCount() == 0
+                ? current
+                : previousLatencies;
+        if(recent.getCount() < MIN_HEDGE_SAMPLES){
+            return 0;
+        }
+        return recent.getValueAtPercentile(policy.getHedgePercentile());
+    }
+
+    private void backoff(int attempt, long minNanos) {
+        double r;
+        synchronized (random){
+            r = random.nextDouble();
+        }
+        long backoff = Math.max(minNanos, policy.backoffNanos(attempt, r));
+        try {
+            TimeUnit.NANOSECONDS.sleep(backoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientHandlerException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    void close() {
+        if(hedgeExecutor != null){
+            hedgeExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.cloudbees.api.event;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries and hedging of the requests of a {@link EventApi.RestClient}, see
+ * {@link EventApi.RestClient.Builder#retry(RetryPolicy)}.
+ *
+ * A request that fails with a retryable exception, by default any I/O error, or gets a retryable status code, by
+ * default 408, 429, 500, 502, 503 and 504, is sent again up to <code>maxAttempts</code> times in total. Attempts are
+ * spaced by an exponential backoff with full jitter, and never less than a <code>Retry-After</code> header asks for.
+ * GET, HEAD, PUT and DELETE requests are idempotent and always retried, POST requests only when they carry an
+ * {@link #IDEMPOTENCY_KEY_HEADER} header.
+ *
+ * With hedging enabled a GET request that hasn't been answered after the given latency percentile of recent GET
+ * requests is sent a second time, and the first of the two responses is used.
+ */
+public class RetryPolicy {
+    /**
+     * Header identifying a POST request so that the Event API can ignore repeated deliveries of it
+     */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Set<Integer> retryableStatusCodes;
+    private final List<Class<? extends Throwable>> retryableExceptions;
+    private final double hedgePercentile;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffNanos = builder.initialBackoffNanos;
+        this.maxBackoffNanos = builder.maxBackoffNanos;
+        this.retryableStatusCodes = builder.retryableStatusCodes;
+        this.retryableExceptions = builder.retryableExceptions;
+        this.hedgePercentile = builder.hedgePercentile;
+    }
+
+    /**
+     * Attempts per request including the first one
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoff(@Nonnull TimeUnit unit) {
+        return unit.convert(initialBackoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxBackoff(@Nonnull TimeUnit unit) {
+        return unit.convert(maxBackoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Set<Integer> getRetryableStatusCodes() {
+        return retryableStatusCodes;
+    }
+
+    public List<Class<? extends Throwable>> getRetryableExceptions() {
+        return retryableExceptions;
+    }
+
+    public boolean isHedging() {
+        return hedgePercentile > 0;
+    }
+
+    /**
+     * Latency percentile of recent GET requests after which a GET request is hedged, 0 if hedging is disabled
+     */
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    boolean isRetryable(int status) {
+        return retryableStatusCodes.contains(status);
+    }
+
+    /**
+     * Whether the exception or one of its causes is of a retryable type
+     */
+    boolean isRetryable(Throwable t) {
+        for(Throwable cause = t; cause != null; cause = cause.getCause()){
+            for(Class<? extends Throwable> type : retryableExceptions){
+                if(type.isInstance(cause)){
+                    return true;
+                }
+            }
+            if(cause.getCause() == cause){
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Backoff before the given retry, 1 for the first one, a random duration up to the exponentially growing bound
+     */
+    long backoffNanos(int retry, double random) {
+        long bound = initialBackoffNanos;
+        for(int i = 1; i < retry && bound < maxBackoffNanos; i++){
+            bound *= 2;
+        }
+        return (long) (Math.min(bound, maxBackoffNanos) * random);
+    }
+
+    public static class Builder {
+        private int maxAttempts = 3;
+        private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(10);
+        private Set<Integer> retryableStatusCodes = ImmutableSet.of(408, 429, 500, 502, 503, 504);
+        private List<Class<? extends Throwable>> retryableExceptions =
+                ImmutableList.<Class<? extends Throwable>>of(IOException.class);
+        private double hedgePercentile;
+
+        /**
+         * Attempts per request including the first one. Defaults to 3.
+         */
+        public Builder maxAttempts(int maxAttempts){
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Bounds of the backoff before the first retry and before any retry. The bound doubles with each retry and
+         * the actual backoff is a random duration below it. Defaults to 100 milliseconds and 10 seconds.
+         */
+        public Builder backoff(long initial, long max, @Nonnull TimeUnit unit){
+            this.initialBackoffNanos = unit.toNanos(initial);
+            this.maxBackoffNanos = unit.toNanos(max);
+            return this;
+        }
+
+        /**
+         * Status codes to retry, replacing the defaults 408, 429, 500, 502, 503 and 504
+         */
+        public Builder retryOnStatus(int... statusCodes){
+            ImmutableSet.Builder<Integer> codes = ImmutableSet.builder();
+            for(int statusCode : statusCodes){
+                codes.add(statusCode);
+            }
+            this.retryableStatusCodes = codes.build();
+            return this;
+        }
+
+        /**
+         * Exception types to retry, replacing the default {@link IOException}. The exceptions thrown by Jersey wrap
+         * the actual cause, which is matched as well.
+         */
+        public Builder retryOn(@Nonnull Class<? extends Throwable>... exceptionTypes){
+            this.retryableExceptions = ImmutableList.copyOf(exceptionTypes);
+            return this;
+        }
+
+        /**
+         * Hedges GET requests that take longer than the given latency percentile of recent GET requests, for
+         * example 95. Disabled by default.
+         */
+        public Builder hedge(double percentile){
+            this.hedgePercentile = percentile;
+            return this;
+        }
+
+        public RetryPolicy build() throws EventApiException {
+            if(maxAttempts < 1){
+                throw new EventApiException("maxAttempts must be at least 1");
+            }
+            if(initialBackoffNanos < 0 || maxBackoffNanos < initialBackoffNanos){
+                throw new EventApiException("backoff must not be negative with max not less than initial");
+            }
+            if(hedgePercentile < 0 || hedgePercentile >= 100){
+                throw new EventApiException("hedge percentile must be between 0 and 100");
+            }
+            return new RetryPolicy(this);
+        }
+    }
+}
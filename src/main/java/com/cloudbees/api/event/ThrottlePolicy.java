@@ -0,0 +1,123 @@
+package com.cloudbees.api.event;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side throttling of a {@link EventApi.RestClient}, see {@link EventApi.RestClient.Builder#throttle(ThrottlePolicy)}.
+ *
+ * Two limits apply to every request:
+ * <ul>
+ *     <li>a token bucket per access token, refilled at <code>rateLimit</code> requests per second and holding up to one
+ *     second worth of requests</li>
+ *     <li>an adaptive limit on the number of requests in flight over the whole RestClient. It grows by about one
+ *     request per round trip while responses are fine and is halved on a 429 or 503 response, or when a response
+ *     takes longer than <code>latencyThreshold</code>.</li>
+ * </ul>
+ * A 429 or 503 response carrying <code>Retry-After</code> also holds back all requests with the same access token
+ * until the given time. A request that can't be sent within <code>maxWait</code> fails with
+ * {@link com.sun.jersey.api.client.ClientHandlerException}.
+ */
+public class ThrottlePolicy {
+    private final double rateLimit;
+    private final int initialConcurrency;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long latencyThresholdNanos;
+    private final long maxWaitNanos;
+
+    private ThrottlePolicy(Builder builder) {
+        this.rateLimit = builder.rateLimit;
+        this.initialConcurrency = builder.initialConcurrency;
+        this.minConcurrency = builder.minConcurrency;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.latencyThresholdNanos = builder.latencyThresholdNanos;
+        this.maxWaitNanos = builder.maxWaitNanos;
+    }
+
+    /**
+     * Requests per second allowed per access token, 0 if unlimited
+     */
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Response latency above which the concurrency limit is reduced, 0 if latency is ignored
+     */
+    public long getLatencyThreshold(@Nonnull TimeUnit unit) {
+        return unit.convert(latencyThresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxWait(@Nonnull TimeUnit unit) {
+        return unit.convert(maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static class Builder {
+        private double rateLimit;
+        private int initialConcurrency = 20;
+        private int minConcurrency = 1;
+        private int maxConcurrency = 200;
+        private long latencyThresholdNanos;
+        private long maxWaitNanos = TimeUnit.SECONDS.toNanos(30);
+
+        /**
+         * Requests per second allowed per access token. Unlimited by default.
+         */
+        public Builder rateLimit(double requestsPerSecond){
+            this.rateLimit = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Bounds of the adaptive limit on requests in flight and its starting value. Defaults to 1, 200 and 20.
+         */
+        public Builder concurrency(int initial, int min, int max){
+            this.initialConcurrency = initial;
+            this.minConcurrency = min;
+            this.maxConcurrency = max;
+            return this;
+        }
+
+        /**
+         * Responses slower than this reduce the concurrency limit. Only 429 and 503 responses do by default.
+         */
+        public Builder latencyThreshold(long latency, @Nonnull TimeUnit unit){
+            this.latencyThresholdNanos = unit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * Longest a request waits for its turn before failing. Defaults to 30 seconds.
+         */
+        public Builder maxWait(long maxWait, @Nonnull TimeUnit unit){
+            this.maxWaitNanos = unit.toNanos(maxWait);
+            return this;
+        }
+
+        public ThrottlePolicy build() throws EventApiException {
+            if(rateLimit < 0){
+                throw new EventApiException("rateLimit must not be negative");
+            }
+            if(minConcurrency <= 0 || initialConcurrency < minConcurrency || maxConcurrency < initialConcurrency){
+                throw new EventApiException("concurrency must satisfy 0 < min <= initial <= max");
+            }
+            if(latencyThresholdNanos < 0 || maxWaitNanos < 0){
+                throw new EventApiException("latencyThreshold and maxWait must not be negative");
+            }
+            return new ThrottlePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.cloudbees.api.event;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.RateLimiter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies a {@link ThrottlePolicy} to the requests of a RestClient.
+ */
+class ThrottlingFilter extends ClientFilter {
+    private static final Logger logger = LoggerFactory.getLogger(ThrottlingFilter.class);
+    private static final String NO_TOKEN = "";
+
+    private final ThrottlePolicy policy;
+    private final long latencyThresholdNanos;
+    private final long maxWaitNanos;
+
+    /**
+     * Rate limit and Retry-After state per Authorization header, forgotten once a token is unused for a while
+     */
+    private final LoadingCache<String, TokenState> tokens;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+
+    ThrottlingFilter(final ThrottlePolicy policy) {
+        this.policy = policy;
+        this.latencyThresholdNanos = policy.getLatencyThreshold(TimeUnit.NANOSECONDS);
+        this.maxWaitNanos = policy.getMaxWait(TimeUnit.NANOSECONDS);
+        this.limit = policy.getInitialConcurrency();
+        this.lastDecrease = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+        this.tokens = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build(
+                new CacheLoader<String, TokenState>() {
+                    @Override
+                    public TokenState load(String key) {
+                        return new TokenState(policy.getRateLimit());
+                    }
+                });
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        Object authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        TokenState token = tokens.getUnchecked(authorization != null ? authorization.toString() : NO_TOKEN);
+        long deadline = System.nanoTime() + maxWaitNanos;
+
+        awaitRetryAfter(token, deadline);
+        if(token.rateLimiter != null
+                && !token.rateLimiter.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)){
+            throw new ClientHandlerException("Rate limit of "+policy.getRateLimit()+" requests per second exceeded");
+        }
+        acquireSlot(deadline);
+
+        long start = System.nanoTime();
+        ClientResponse response;
+        try {
+            response = getNext().handle(request);
+        } catch (RuntimeException e) {
+            releaseSlot();
+            throw e;
+        }
+        long latency = System.nanoTime() - start;
+
+        int status = response.getStatus();
+        if(status == 429 || status == 503){
+            long retryAfter = retryAfterMillis(response.getHeaders().getFirst("Retry-After"));
+            if(retryAfter > 0){
+                token.retryAfter(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfter));
+            }
+            decrease(latency);
+        }else if(latencyThresholdNanos > 0 && latency > latencyThresholdNanos){
+            decrease(latency);
+        }else{
+            increase();
+        }
+        releaseSlot();
+        return response;
+    }
+
+    private void awaitRetryAfter(TokenState token, long deadline) {
+        long wait = token.retryAfter - System.nanoTime();
+        if(wait <= 0){
+            return;
+        }
+        if(System.nanoTime() + wait > deadline){
+            throw new ClientHandlerException("Event API asked to retry after "
+                    + TimeUnit.NANOSECONDS.toMillis(wait)+"ms, more than the maximum wait");
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientHandlerException("Interrupted while waiting for Retry-After", e);
+        }
+    }
+
+    private void acquireSlot(long deadline) {
+        lock.lock();
+        try {
+            while(inFlight >= (int) limit){
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0){
+                    throw new ClientHandlerException("Too many Event API requests in flight, limit is "+(int) limit);
+                }
+                slotFreed.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientHandlerException("Interrupted while waiting to send request", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Additive increase, about one more request in flight per limit worth of successful responses
+     */
+    private void increase() {
+        lock.lock();
+        try {
+            limit = Math.min(policy.getMaxConcurrency(), limit + 1.0 / limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Multiplicative decrease, at most once per round trip so that a burst of slow responses doesn't collapse the
+     * limit to the minimum
+     */
+    private void decrease(long latency) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if(now - lastDecrease < latency){
+                return;
+            }
+            lastDecrease = now;
+            limit = Math.max(policy.getMinConcurrency(), limit / 2);
+            logger.debug("Reduced Event API concurrency limit to {}", (int) limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Parses a Retry-After header, either delay seconds or an HTTP date
+     *
+     * @return delay in milliseconds, 0 if there is none or it can't be parsed
+     */
+    static long retryAfterMillis(String retryAfter) {
+        if(retryAfter == null){
+            return 0;
+        }
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            // not delay seconds
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            return Math.max(0, format.parse(retryAfter.trim()).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static class TokenState {
+        private final RateLimiter rateLimiter;
+        private volatile long retryAfter;
+
+        private TokenState(double rateLimit) {
+            this.rateLimiter = rateLimit > 0 ? RateLimiter.create(rateLimit) : null;
+            this.retryAfter = System.nanoTime();
+        }
+
+        private void retryAfter(long nanoTime) {
+            if(nanoTime - retryAfter > 0){
+                retryAfter = nanoTime;
+            }
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.cloudbees.api.event.stub;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded Event API server for load and integration tests, on the JDK HTTP server.
+ *
+ * Implements the <code>/api/events/</code> contract used by <code>EventApi</code>: POST creates an event and returns
+ * its Location, honoring the <code>Idempotency-Key</code> header; GET on an event returns it with an ETag; GET on the
+ * collection runs a query with all the parameters of <code>QueryEventObject</code>; DELETE removes an event. Events
+ * are kept in memory, indexed by target URL, type and Services Platform service, and returned oldest first.
+ * Activation times are in seconds, the from and to query parameters in milliseconds. Gzip encoded requests are
+ * accepted and responses are gzip encoded when the client accepts it.
+ *
+ * Faults can be injected and changed while the server runs: a random latency per request, a rate of error responses,
+ * and a rate limit per Authorization header answered with 429 and <code>Retry-After</code>.
+ *
+ * <pre>
+ *     EventApiStubServer server = new EventApiStubServer.Builder()
+ *             .latency(5, 50, TimeUnit.MILLISECONDS)
+ *             .errorRate(0.01, 503)
+ *             .rateLimit(200)
+ *             .build();
+ *     server.start();
+ *
+ *     EventApi eventApi = new EventApi("token", server.getEndpoint(), restClient);
+ *     ...
+ *     server.stop();
+ * </pre>
+ *
+ * It can also be run on its own, see {@link #main(String[])}.
+ */
+public class EventApiStubServer {
+    private static final Logger logger = LoggerFactory.getLogger(EventApiStubServer.class);
+
+    static final String EVENT_API_PATH = "/api/events/";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final EventStore store = new EventStore();
+    private final Random random = new Random();
+
+    /**
+     * Locations of the events created per idempotency key
+     */
+    private final Cache<String, String> idempotencyKeys =
+            CacheBuilder.newBuilder().maximumSize(100000).expireAfterWrite(1, TimeUnit.DAYS).build();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    private volatile long minLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile double errorRate;
+    private volatile int errorStatus;
+    private volatile LoadingCache<String, RateLimiter> rateLimiters;
+
+    static {
+        // Otherwise Nagle's algorithm adds tens of milliseconds to every exchange
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private EventApiStubServer(Builder builder) throws IOException {
+        this.executor = Executors.newFixedThreadPool(builder.threads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-api-stub-%d").build());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 1024);
+        this.server.setExecutor(executor);
+        this.server.createContext(EVENT_API_PATH, new EventsHandler());
+        setLatency(builder.minLatencyNanos, builder.maxLatencyNanos, TimeUnit.NANOSECONDS);
+        setErrorRate(builder.errorRate, builder.errorStatus);
+        setRateLimit(builder.rateLimit);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Endpoint to pass to <code>new EventApi(token, endpoint, restClient)</code>
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Latency added to every request, uniformly distributed between min and max
+     */
+    public void setLatency(long min, long max, @Nonnull TimeUnit unit) {
+        this.minLatencyNanos = unit.toNanos(min);
+        this.maxLatencyNanos = Math.max(unit.toNanos(min), unit.toNanos(max));
+    }
+
+    /**
+     * Fraction of requests answered with the given status instead of being processed, 0 to disable
+     */
+    public void setErrorRate(double errorRate, int status) {
+        this.errorRate = errorRate;
+        this.errorStatus = status;
+    }
+
+    /**
+     * Requests per second allowed per Authorization header, 0 for unlimited. Requests beyond that get a 429 response
+     * with <code>Retry-After: 1</code>.
+     */
+    public void setRateLimit(final double requestsPerSecond) {
+        this.rateLimiters = requestsPerSecond <= 0 ? null : CacheBuilder.newBuilder().build(
+                new CacheLoader<String, RateLimiter>() {
+                    @Override
+                    public RateLimiter load(String key) {
+                        return RateLimiter.create(requestsPerSecond);
+                    }
+                });
+    }
+
+    /**
+     * Number of events stored
+     */
+    public int getEventCount() {
+        return store.size();
+    }
+
+    /**
+     * Removes all events
+     */
+    public void clear() {
+        store.clear();
+        idempotencyKeys.invalidateAll();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    private class EventsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try {
+                byte[] body = readBody(exchange);
+                delay();
+                String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                if(authorization == null){
+                    send(exchange, 401, null);
+                    return;
+                }
+                LoadingCache<String, RateLimiter> limiters = rateLimiters;
+                if(limiters != null && !limiters.getUnchecked(authorization).tryAcquire()){
+                    throttled.incrementAndGet();
+                    exchange.getResponseHeaders().add("Retry-After", "1");
+                    send(exchange, 429, null);
+                    return;
+                }
+                if(injectError()){
+                    injectedErrors.incrementAndGet();
+                    send(exchange, errorStatus, null);
+                    return;
+                }
+
+                String method = exchange.getRequestMethod();
+                String id = exchange.getRequestURI().getPath().substring(EVENT_API_PATH.length());
+                if("POST".equals(method) && id.isEmpty()){
+                    publish(exchange, body);
+                }else if("GET".equals(method) && id.isEmpty()){
+                    query(exchange);
+                }else if("GET".equals(method)){
+                    read(exchange, id);
+                }else if("DELETE".equals(method)){
+                    send(exchange, store.delete(id) ? 200 : 404, null);
+                }else{
+                    send(exchange, 405, null);
+                }
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, null);
+            } catch (IOException e) {
+                logger.debug("Failed to handle "+exchange.getRequestURI()+": "+e.getMessage(), e);
+                throw e;
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void publish(HttpExchange exchange, byte[] body) throws IOException {
+            String key = exchange.getRequestHeaders().getFirst(IDEMPOTENCY_KEY_HEADER);
+            String location = key != null ? idempotencyKeys.getIfPresent(key) : null;
+            if(location != null){
+                exchange.getResponseHeaders().add("Location", location);
+                send(exchange, 201, null);
+                return;
+            }
+
+            JsonNode json;
+            try {
+                json = mapper.readTree(body);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+            if(!(json instanceof ObjectNode) || !json.path("target").path("url").isTextual()
+                    || !json.path("type").isTextual() || !json.path("event").isObject()){
+                throw new IllegalArgumentException("Not an event");
+            }
+            final ObjectNode event = (ObjectNode) json;
+            if(!event.path("activation_time").isNumber()){
+                event.put("activation_time", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+            }
+            List<String> targetTypes = new ArrayList<String>();
+            for(JsonNode type : event.path("target").path("types")){
+                targetTypes.add(type.asText());
+            }
+            EventStore.StoredEvent stored = store.add(event.path("target").path("url").asText(), targetTypes,
+                    event.path("type").asText(), TimeUnit.SECONDS.toMillis(event.path("activation_time").asLong()),
+                    new EventStore.JsonWriter() {
+                        @Override
+                        public byte[] write(String id) {
+                            event.put("id", id);
+                            try {
+                                return mapper.writeValueAsBytes(event);
+                            } catch (IOException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                    });
+
+            location = getEndpoint() + EVENT_API_PATH.substring(1) + stored.id;
+            if(key != null){
+                idempotencyKeys.put(key, location);
+            }
+            exchange.getResponseHeaders().add("Location", location);
+            send(exchange, 201, null);
+        }
+
+        private void read(HttpExchange exchange, String id) throws IOException {
+            EventStore.StoredEvent event = store.get(id);
+            if(event == null){
+                send(exchange, 404, null);
+                return;
+            }
+            // Events never change, the id is a valid entity tag
+            String etag = "\"" + event.id + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            if(etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))){
+                send(exchange, 304, null);
+                return;
+            }
+            send(exchange, 200, event.json);
+        }
+
+        private void query(HttpExchange exchange) throws IOException {
+            EventStore.Query query;
+            try {
+                query = EventStore.Query.parse(parseQuery(exchange.getRequestURI()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(e);
+            }
+            List<EventStore.StoredEvent> events = store.query(query);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write('[');
+            for(int i = 0; i < events.size(); i++){
+                if(i > 0){
+                    out.write(',');
+                }
+                out.write(events.get(i).json);
+            }
+            out.write(']');
+            send(exchange, 200, out.toByteArray());
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        try {
+            if("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))){
+                in = new GZIPInputStream(in);
+            }
+            return ByteStreams.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] json) throws IOException {
+        if(json == null){
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if(acceptEncoding != null && acceptEncoding.contains("gzip")){
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(status, 0);
+            OutputStream out = new GZIPOutputStream(exchange.getResponseBody());
+            out.write(json);
+            out.close();
+        }else{
+            exchange.sendResponseHeaders(status, json.length);
+            exchange.getResponseBody().write(json);
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<String, String>();
+        String query = uri.getRawQuery();
+        if(query == null){
+            return params;
+        }
+        for(String param : query.split("&")){
+            int eq = param.indexOf('=');
+            if(eq > 0){
+                params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private void delay() {
+        long min = minLatencyNanos;
+        long max = maxLatencyNanos;
+        if(max <= 0){
+            return;
+        }
+        double r;
+        synchronized (random){
+            r = random.nextDouble();
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(min + (long) ((max - min) * r));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean injectError() {
+        double rate = errorRate;
+        if(rate <= 0){
+            return false;
+        }
+        synchronized (random){
+            return random.nextDouble() < rate;
+        }
+    }
+
+    /**
+     * Runs the server until the process is killed. Options:
+     * <pre>
+     *     --port 8080            port to listen on, on the loopback interface, 0 for any
+     *     --threads 64           request handler threads
+     *     --latency 5,50         injected latency range in milliseconds
+     *     --error-rate 0.01,503  fraction of requests failed with the given status
+     *     --rate-limit 100       requests per second per Authorization header
+     * </pre>
+     */
+    public static void main(String[] args) throws Exception {
+        Builder builder = new Builder().port(8080);
+        for(int i = 0; i + 1 < args.length; i += 2){
+            String[] values = args[i + 1].split(",");
+            if("--port".equals(args[i])){
+                builder.port(Integer.parseInt(values[0]));
+            }else if("--threads".equals(args[i])){
+                builder.threads(Integer.parseInt(values[0]));
+            }else if("--latency".equals(args[i])){
+                builder.latency(Long.parseLong(values[0]), Long.parseLong(values[values.length - 1]),
+                        TimeUnit.MILLISECONDS);
+            }else if("--error-rate".equals(args[i])){
+                builder.errorRate(Double.parseDouble(values[0]), values.length > 1 ? Integer.parseInt(values[1]) : 503);
+            }else if("--rate-limit".equals(args[i])){
+                builder.rateLimit(Double.parseDouble(values[0]));
+            }else{
+                throw new IllegalArgumentException("Unknown option "+args[i]);
+            }
+        }
+        EventApiStubServer server = builder.build();
+        server.start();
+        System.out.println("Event API stub listening on " + server.getEndpoint());
+        Thread.currentThread().join();
+    }
+
+    public static class Builder {
+        private int port;
+        private int threads = 64;
+        private long minLatencyNanos;
+        private long maxLatencyNanos;
+        private double errorRate;
+        private int errorStatus = 503;
+        private double rateLimit;
+
+        /**
+         * Port to listen on, on the loopback interface. Defaults to 0, any free port.
+         */
+        public Builder port(int port){
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Number of request handler threads. Defaults to 64.
+         */
+        public Builder threads(int threads){
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * See {@link EventApiStubServer#setLatency(long, long, TimeUnit)}. No latency is added by default.
+         */
+        public Builder latency(long min, long max, @Nonnull TimeUnit unit){
+            this.minLatencyNanos = unit.toNanos(min);
+            this.maxLatencyNanos = unit.toNanos(max);
+            return this;
+        }
+
+        /**
+         * See {@link EventApiStubServer#setErrorRate(double, int)}. No errors are injected by default.
+         */
+        public Builder errorRate(double errorRate, int status){
+            this.errorRate = errorRate;
+            this.errorStatus = status;
+            return this;
+        }
+
+        /**
+         * See {@link EventApiStubServer#setRateLimit(double)}. Unlimited by default.
+         */
+        public Builder rateLimit(double requestsPerSecond){
+            this.rateLimit = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Creates the server, call {@link EventApiStubServer#start()} to start it
+         */
+        public EventApiStubServer build() throws IOException {
+            if(threads <= 0){
+                throw new IllegalArgumentException("threads must be greater than 0");
+            }
+            if(minLatencyNanos < 0 || maxLatencyNanos < minLatencyNanos){
+                throw new IllegalArgumentException("latency must not be negative with max not less than min");
+            }
+            if(errorRate < 0 || errorRate > 1){
+                throw new IllegalArgumentException("errorRate must be between 0 and 1");
+            }
+            return new EventApiStubServer(this);
+        }
+    }
+}
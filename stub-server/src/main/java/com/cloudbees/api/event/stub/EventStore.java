@@ -0,0 +1,303 @@
+package com.cloudbees.api.event.stub;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory events ordered by activation time, indexed by id, target URL, type and Services Platform service.
+ */
+class EventStore {
+    /**
+     * Path of a Services Platform resource or subscription target URL
+     */
+    private static final Pattern SP_TARGET =
+            Pattern.compile(".*/api/services/(?:resources|subscriptions)/([^/]+)(?:/([^/]+))?(?:/([^/]+))?/?");
+
+    private static final Comparator<StoredEvent> BY_TIME = new Comparator<StoredEvent>() {
+        @Override
+        public int compare(StoredEvent e1, StoredEvent e2) {
+            if(e1.activationMillis != e2.activationMillis){
+                return e1.activationMillis < e2.activationMillis ? -1 : 1;
+            }
+            return e1.seq < e2.seq ? -1 : (e1.seq == e2.seq ? 0 : 1);
+        }
+    };
+
+    private static final NavigableSet<StoredEvent> NONE = new TreeSet<StoredEvent>(BY_TIME);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, StoredEvent> byId = new HashMap<String, StoredEvent>();
+    private final NavigableSet<StoredEvent> byTime = new TreeSet<StoredEvent>(BY_TIME);
+    private final Map<String, NavigableSet<StoredEvent>> byTarget = new HashMap<String, NavigableSet<StoredEvent>>();
+    private final Map<String, NavigableSet<StoredEvent>> byType = new HashMap<String, NavigableSet<StoredEvent>>();
+    private final Map<String, NavigableSet<StoredEvent>> byService = new HashMap<String, NavigableSet<StoredEvent>>();
+    private long seq;
+
+    /**
+     * Adds an event
+     *
+     * @param json serialized event, without id
+     * @return the stored event, with the next id
+     */
+    StoredEvent add(String targetUrl, Collection<String> targetTypes, String type, long activationMillis,
+                    JsonWriter json) {
+        lock.writeLock().lock();
+        try {
+            long next = ++seq;
+            String id = String.valueOf(next);
+            StoredEvent event = new StoredEvent(id, next, targetUrl, ImmutableSet.copyOf(targetTypes), type,
+                    activationMillis, json.write(id));
+            byId.put(id, event);
+            byTime.add(event);
+            index(byTarget, targetUrl, event);
+            index(byType, type, event);
+            if(event.service != null){
+                index(byService, event.service, event);
+            }
+            return event;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    StoredEvent get(String id) {
+        lock.readLock().lock();
+        try {
+            return byId.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean delete(String id) {
+        lock.writeLock().lock();
+        try {
+            StoredEvent event = byId.remove(id);
+            if(event == null){
+                return false;
+            }
+            byTime.remove(event);
+            unindex(byTarget, event.targetUrl, event);
+            unindex(byType, event.type, event);
+            if(event.service != null){
+                unindex(byService, event.service, event);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            byId.clear();
+            byTime.clear();
+            byTarget.clear();
+            byType.clear();
+            byService.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Events matching the query, oldest first
+     */
+    List<StoredEvent> query(Query query) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<StoredEvent> candidates = candidates(query);
+            StoredEvent from = new StoredEvent(query.from != null ? query.from : Long.MIN_VALUE, Long.MIN_VALUE);
+            StoredEvent to = new StoredEvent(query.to != null ? query.to : Long.MAX_VALUE, Long.MIN_VALUE);
+            List<StoredEvent> result = new ArrayList<StoredEvent>();
+            int skipped = 0;
+            for(StoredEvent event : candidates.subSet(from, true, to, false)){
+                if(result.size() >= query.limit){
+                    break;
+                }
+                if(!query.matches(event)){
+                    continue;
+                }
+                if(skipped < query.offset){
+                    skipped++;
+                    continue;
+                }
+                result.add(event);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Most selective index for the query
+     */
+    private NavigableSet<StoredEvent> candidates(Query query) {
+        NavigableSet<StoredEvent> candidates = byTime;
+        if(query.cloudResource != null){
+            candidates = byTarget.get(query.cloudResource);
+        }else if(query.types != null && query.types.size() == 1){
+            candidates = byType.get(query.types.iterator().next());
+        }else if(query.service != null){
+            candidates = byService.get(query.service);
+        }
+        return candidates != null ? candidates : NONE;
+    }
+
+    private static void index(Map<String, NavigableSet<StoredEvent>> index, String key, StoredEvent event) {
+        NavigableSet<StoredEvent> events = index.get(key);
+        if(events == null){
+            events = new TreeSet<StoredEvent>(BY_TIME);
+            index.put(key, events);
+        }
+        events.add(event);
+    }
+
+    private static void unindex(Map<String, NavigableSet<StoredEvent>> index, String key, StoredEvent event) {
+        NavigableSet<StoredEvent> events = index.get(key);
+        if(events != null){
+            events.remove(event);
+            if(events.isEmpty()){
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Serializes an event once its id is known
+     */
+    interface JsonWriter {
+        byte[] write(String id);
+    }
+
+    static class StoredEvent {
+        final String id;
+        final long seq;
+        final String targetUrl;
+        final Set<String> targetTypes;
+        final String type;
+        final long activationMillis;
+        final byte[] json;
+
+        // Parsed from a Services Platform target URL, null otherwise
+        final String service;
+        final String account;
+        final String resource;
+
+        private StoredEvent(String id, long seq, String targetUrl, Set<String> targetTypes, String type,
+                            long activationMillis, byte[] json) {
+            this.id = id;
+            this.seq = seq;
+            this.targetUrl = targetUrl;
+            this.targetTypes = targetTypes;
+            this.type = type;
+            this.activationMillis = activationMillis;
+            this.json = json;
+            Matcher m = targetUrl != null ? SP_TARGET.matcher(targetUrl) : null;
+            boolean sp = m != null && m.matches();
+            this.service = sp ? m.group(1) : null;
+            this.account = sp ? m.group(2) : null;
+            this.resource = sp ? m.group(3) : null;
+        }
+
+        /**
+         * Bound for range lookups
+         */
+        private StoredEvent(long activationMillis, long seq) {
+            this(null, seq, null, Collections.<String>emptySet(), null, activationMillis, null);
+        }
+    }
+
+    /**
+     * Parameters of a query, as sent by <code>QueryEventObject</code>
+     */
+    static class Query {
+        String account;
+        String service;
+        String resource;
+        String cloudResource;
+        String cloudResourceType;
+        Long from;
+        Long to;
+        int limit = Integer.MAX_VALUE;
+        int offset;
+        Set<String> types;
+
+        static Query parse(Map<String, String> params) {
+            Query query = new Query();
+            query.account = params.get("account");
+            query.service = params.get("service");
+            query.resource = params.get("resource");
+            query.cloudResource = params.get("cloud_resource");
+            query.cloudResourceType = params.get("cloud_resource_type");
+            if(params.containsKey("from")){
+                query.from = Long.parseLong(params.get("from"));
+            }
+            if(params.containsKey("to")){
+                query.to = Long.parseLong(params.get("to"));
+            }
+            if(params.containsKey("limit")){
+                query.limit = Integer.parseInt(params.get("limit"));
+            }
+            if(params.containsKey("offset")){
+                query.offset = Integer.parseInt(params.get("offset"));
+            }
+            if(params.containsKey("types")){
+                query.types = ImmutableSet.copyOf(Splitter.on(',').omitEmptyStrings().split(params.get("types")));
+            }
+            return query;
+        }
+
+        /**
+         * Whether the event matches all parameters but from, to, limit and offset
+         */
+        boolean matches(StoredEvent event) {
+            if(cloudResource != null){
+                // service, resource and account are ignored with cloud_resource
+                if(!cloudResource.equals(event.targetUrl)){
+                    return false;
+                }
+            }else{
+                if(service != null && !service.equals(event.service)){
+                    return false;
+                }
+                if(account != null && !account.equals(event.account)){
+                    return false;
+                }
+                if(resource != null && !resource.equals(event.resource)){
+                    return false;
+                }
+            }
+            if(cloudResourceType != null && !event.targetTypes.contains(cloudResourceType)){
+                return false;
+            }
+            return types == null || types.contains(event.type);
+        }
+    }
+}